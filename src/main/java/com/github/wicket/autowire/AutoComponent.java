@@ -26,4 +26,10 @@ public @interface AutoComponent {
 
   boolean inject() default true;
 
+  /**
+   * Name of the {@link ComponentFactory} that creates the component, see
+   * {@link AutoWireSettings#addFactory(String, ComponentFactory)}.
+   */
+  String factory() default "";
+
 }
@@ -13,87 +13,301 @@
  */
 package com.github.wicket.autowire;
 
-import static java.util.Map.Entry;
-
-import java.lang.reflect.Constructor;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Modifier;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Stack;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicReference;
 
+import javax.management.JMException;
+import javax.management.ObjectName;
+
 import org.apache.wicket.Application;
 import org.apache.wicket.Component;
+import org.apache.wicket.IApplicationListener;
 import org.apache.wicket.MarkupContainer;
-import org.apache.wicket.WicketRuntimeException;
 import org.apache.wicket.application.IComponentInitializationListener;
 import org.apache.wicket.application.IComponentInstantiationListener;
-import org.apache.wicket.markup.ComponentTag;
 import org.apache.wicket.markup.IMarkupFragment;
-import org.apache.wicket.markup.MarkupElement;
+import org.apache.wicket.markup.MarkupResourceStream;
 import org.apache.wicket.markup.MarkupNotFoundException;
-import org.apache.wicket.markup.MarkupStream;
-import org.apache.wicket.markup.WicketTag;
 import org.apache.wicket.markup.html.TransparentWebMarkupContainer;
 import org.apache.wicket.markup.html.border.Border;
-import org.apache.wicket.markup.html.list.ListItem;
-import org.apache.wicket.markup.resolver.WicketContainerResolver;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public final class AutoWire implements IComponentInitializationListener, IComponentInstantiationListener {
 
   private static final Logger log = LoggerFactory.getLogger(AutoWire.class);
-  private static final ComponentCache cache = new ComponentCache();
+  // per application, as the settings decide what is cached
+  private final ComponentCache cache = new ComponentCache();
+  private final AutoWireSettings settings;
+  private final AutoWireMetrics metrics;
+  // the metrics, or all listeners if there are others
+  private final AutoWireListener listener;
+  // null if requests are not profiled
+  private final RequestProfiler profiler;
+  // null if markup is not reloaded
+  private final MarkupWatch watch;
+
+  // package-private for benchmarks, applications use install
+  AutoWire(final AutoWireSettings settings) {
+    this(settings, null);
+  }
 
-  private AutoWire() {
+  private AutoWire(final AutoWireSettings settings, final Application application) {
+    this.settings = settings;
+    this.watch = application == null ? null : MarkupWatch.of(application, new MarkupWatch.Listener() {
+
+      @Override
+      public void onChange(MarkupResourceStream markup) {
+        invalidate(markup);
+      }
+    });
+    this.metrics = new AutoWireMetrics(this);
+    this.profiler = settings.getSlowRequestMillis() < 0 ? null : new RequestProfiler(settings.getSlowRequestMillis());
+    if (settings.getListeners().isEmpty() && profiler == null) {
+      this.listener = metrics;
+    }
+    else {
+      final List<AutoWireListener> listeners = new ArrayList<AutoWireListener>();
+      listeners.add(metrics);
+      if (profiler != null) {
+        listeners.add(profiler);
+      }
+      listeners.addAll(settings.getListeners());
+      this.listener = new Listeners(listeners);
+    }
   }
 
   public static void install(final Application application) {
-    final AutoWire instance = new AutoWire();
+    install(application, new AutoWireSettings());
+  }
+
+  public static void install(final Application application, final AutoWireSettings settings) {
+    final AutoWire instance = new AutoWire(settings, application);
     application.getComponentInitializationListeners().add(instance);
     application.getComponentInstantiationListeners().add(instance);
+    if (instance.profiler != null) {
+      application.getRequestCycleListeners().add(instance.profiler);
+    }
+    if (settings.isJmxEnabled()) {
+      MBeanRegistration.register(application, instance.metrics);
+    }
+    if (!settings.getWarmUpClasses().isEmpty() || !settings.getWarmUpPackages().isEmpty()) {
+      WarmUp.run(instance, settings, application.getClass().getClassLoader());
+    }
+  }
+
+  /**
+   * @return the instance installed in the application, or {@code null}
+   */
+  public static AutoWire get(final Application application) {
+    for (IComponentInstantiationListener listener : application.getComponentInstantiationListeners()) {
+      if (listener instanceof AutoWire) {
+        return (AutoWire) listener;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @return cache and timing statistics of this instance.
+   */
+  public AutoWireMetrics getMetrics() {
+    return metrics;
   }
 
   @Override
   public void onInstantiation(final Component component) {
-    Value value = cache.get(component.getClass());
-    if (value == null) {
+    final Class<? extends Component> type = component.getClass();
+    Value value = cache.get(type);
+    if (value == Value.NONE) {
+      // nothing to do, not even counting
+      return;
+    }
+    if (value != null) {
+      listener.onClassCache(type, true);
+    }
+    else {
       if (log.isTraceEnabled()) {
         log.trace("Cache miss");
       }
+      listener.onClassCache(type, false);
+
+      value = cache.loading.get(cache, type, new Callable<Value>() {
 
-      synchronized (AutoWire.class) {
-        value = cache.get(component.getClass());
-        if (value == null) {
-          value = getInstantiationActions(component);
-          cache.put(component.getClass(), value);
+        @Override
+        public Value call() {
+          return getInstantiationActions(type, component);
         }
-      }
+      });
+    }
+    if (value != Value.NONE) {
+      final long begin = System.nanoTime();
+      value.performInstantiationActions(component);
+      listener.onInstantiated(type, System.nanoTime() - begin);
     }
-    value.performInstantiationActions(component);
   }
 
   boolean hasAutoComponentAnnotatedFields(Class clazz) {
-    synchronized (AutoWire.class) {
-      return cache.get(clazz).hasAutoComponentAnnotatedFields;
+    return cache.get(clazz).hasAutoComponentAnnotatedFields;
+  }
+
+  // number of distinct wiring plans cached for the class
+  int getPlanCount(Class<?> clazz) {
+    final Set<Plan> plans = Collections.newSetFromMap(new IdentityHashMap<Plan, Boolean>());
+    final Value value = cache.get(clazz);
+    if (value != null) {
+      plans.addAll(value.cache.values());
+    }
+    return plans.size();
+  }
+
+  int getCachedClassCount() {
+    return cache.size();
+  }
+
+  // distinct plans of all classes
+  int getCachedPlanCount() {
+    return getCachedPlans().size();
+  }
+
+  // rough: fixed sizes per class and field, per cache entry its map node,
+  // entry and key, plus the distinct plans
+  long getEstimatedCacheBytes() {
+    long bytes = 0;
+    int entries = 0;
+    for (Value value : cache.values()) {
+      bytes += 128 + 128 * value.fields.size();
+      entries += value.cache.size() + value.skeletons.size();
+    }
+    for (Plan plan : getCachedPlans()) {
+      bytes += plan.getEstimatedBytes();
+    }
+    return bytes + 80L * entries;
+  }
+
+  private Set<Plan> getCachedPlans() {
+    final Set<Plan> plans = Collections.newSetFromMap(new IdentityHashMap<Plan, Boolean>());
+    for (Value value : cache.values()) {
+      plans.addAll(value.cache.values());
+      plans.addAll(value.skeletons.values());
+    }
+    return plans;
+  }
+
+  // number of plans of the class looked up without a key
+  int getRecentPlanCount(Class<?> clazz) {
+    final Value value = cache.get(clazz);
+    return value == null ? 0 : value.getRecentPlanCount();
+  }
+
+  // evict idle and least recently used plans of the class now
+  void sweepPlans(Class<?> clazz) {
+    cache.get(clazz).sweep();
+  }
+
+  // forget all classes and their plans
+  void clearCache() {
+    cache.clear();
+  }
+
+  // forget the plans of all classes, but keep their fields and actions
+  void clearPlans() {
+    for (Value value : cache.values()) {
+      value.cache.clear();
+      value.skeletons.clear();
+      value.missingMarkup.clear();
+      Arrays.fill(value.recent, null);
     }
   }
 
-  private Value getInstantiationActions(Component component) {
+  // forget the plans built for the markup
+  private void invalidate(MarkupResourceStream markup) {
+    for (Value value : cache.values()) {
+      value.invalidate(markup);
+    }
+  }
+
+  MarkupWatch getMarkupWatch() {
+    return watch;
+  }
+
+  // builds the plan of an instantiated component without caching it
+  Plan buildPlan(Component component) {
+    final IMarkupFragment markup = ((MarkupContainer) component).getMarkup(null);
+    return cache.get(component.getClass()).buildPlan(component, markup, new AutoWireSettings());
+  }
+
+  // inspect the class before any of its components is instantiated
+  void prepare(final Class<? extends Component> type) {
+    cache.loading.get(cache, type, new Callable<Value>() {
+
+      @Override
+      public Value call() {
+        return getInstantiationActions(type, null);
+      }
+    });
+  }
+
+  /**
+   * @param component
+   *          the first instance, or {@code null} if the class is prepared
+   *          ahead. Then all fields are expected to be unassigned, as they are
+   *          when the component constructor notifies listeners.
+   */
+  private Value getInstantiationActions(Class<? extends Component> type, Component component) {
     List<Action> actions = new ArrayList<Action>();
+    List<FieldAccessor> fields = new ArrayList<FieldAccessor>();
+    // per field, the deferred creation of its component
+    List<Action> creators = new ArrayList<Action>();
+    // fields by the id of the component they are injected with
+    Map<String, Integer> fieldsById = new HashMap<String, Integer>();
+    // fields with an id known only from their value
+    List<Integer> unindexed = new ArrayList<Integer>();
     boolean foundAnnotationAutoComponent = false;
 
-    if (isAutoWiringPossible(component)) {
+    if (!settings.isInScope(type)) {
+      if (log.isTraceEnabled()) {
+        log.trace(type + " is out of scope");
+      }
+      return Value.NONE;
+    }
+
+    if (isAutoWiringPossible(type)) {
+      // generated wirers only create all components at once, with constructors
+      final boolean generated = !settings.isDeferInstantiation() && !settings.hasTypeFactories();
+      final AutoWirer<Component> wirer = generated ? getWirer(type) : null;
+      if (wirer != null) {
+        if (log.isTraceEnabled()) {
+          log.trace("Using generated wirer " + wirer.getClass().getName());
+        }
+        final String[] names = wirer.getFieldNames();
+        for (int i = 0; i < names.length; i++) {
+          fields.add(FieldAccessor.of(wirer, i, names[i]));
+          creators.add(null);
+          unindexed.add(i);
+        }
+        actions.add(new GeneratedInstantiationAction(wirer));
+        return new Value(actions, fields, creators, fieldsById, unindexed, names.length > 0, settings, watch);
+      }
+
       Set<String> done = new HashSet<String>();
-      Class<?> clazz = component.getClass();
+      Class<?> clazz = type;
       // iterate over class hierarchy
       while (Component.class.isAssignableFrom(clazz)) {
         if (log.isTraceEnabled()) {
@@ -103,22 +317,41 @@ public final class AutoWire implements IComponentInitializationListener, ICompon
         for (final Field field : clazz.getDeclaredFields()) {
           if (field.isAnnotationPresent(AutoComponent.class)) {
             foundAnnotationAutoComponent = true;
+            final FieldAccessor.Handle accessor = FieldAccessor.of(field);
+            fields.add(accessor);
+            creators.add(null);
             AutoComponent ann = field.getAnnotation(AutoComponent.class);
             if (ann.inject()) {
               final String id = ann.id().isEmpty() ? field.getName() : ann.id();
               // fields in super classes are ignored, if they are in subclasses too
               if (!done.contains(id)) {
                 done.add(id);
-                Component value = getValue(component, field);
+                Component value = component == null ? null : accessor.get(component);
                 if (value == null) {
-                  actions.add(new AssignInstanceAction(field, id));
+                  final Action action = new AssignInstanceAction(ConstructorFactory.of(field, type, settings),
+                                                                 getTargets(accessor),
+                                                                 id);
+                  if (settings.isDeferInstantiation()) {
+                    creators.set(creators.size() - 1, action);
+                  }
+                  else {
+                    actions.add(action);
+                  }
+                  fieldsById.put(id, fields.size() - 1);
                 }
                 else {
                   if (log.isTraceEnabled()) {
                     log.trace("Field " + field.getName() + " is already initialized. skipping.");
                   }
+                  unindexed.add(fields.size() - 1);
                 }
               }
+              else if (!fieldsById.containsKey(id)) {
+                unindexed.add(fields.size() - 1);
+              }
+            }
+            else {
+              unindexed.add(fields.size() - 1);
             }
           }
         }
@@ -130,31 +363,67 @@ public final class AutoWire implements IComponentInitializationListener, ICompon
       log.trace("Actions: " + actions);
     }
 
-    return new Value(actions, foundAnnotationAutoComponent);
+    if (actions.isEmpty() && !foundAnnotationAutoComponent) {
+      return Value.NONE;
+    }
+    return new Value(actions,
+                     fields,
+                     creators,
+                     fieldsById,
+                     unindexed,
+                     foundAnnotationAutoComponent,
+                     settings,
+                     watch);
   }
 
-  private static Component getValue(Component component, Field field) {
-    boolean accessible = field.isAccessible();
-    field.setAccessible(true);
+  // look up the wirer generated by the annotation processor, if any
+  @SuppressWarnings("unchecked")
+  private static AutoWirer<Component> getWirer(Class<?> clazz) {
     try {
-      Component value = (Component) field.get(component);
-      field.setAccessible(accessible);
-      return value;
+      Class<?> wirerClass = Class.forName(clazz.getName() + AutoWirer.SUFFIX, true, clazz.getClassLoader());
+      if (AutoWirer.class.isAssignableFrom(wirerClass)) {
+        return (AutoWirer<Component>) wirerClass.getDeclaredConstructor().newInstance();
+      }
+    }
+    catch (ClassNotFoundException e) {
+      // no generated code, use reflection
+    }
+    catch (NoSuchMethodException e) {
+      log.warn("Unable to instantiate generated wirer for " + clazz, e);
+    }
+    catch (InstantiationException e) {
+      log.warn("Unable to instantiate generated wirer for " + clazz, e);
     }
     catch (IllegalAccessException e) {
-      return null;
+      log.warn("Unable to instantiate generated wirer for " + clazz, e);
+    }
+    catch (InvocationTargetException e) {
+      log.warn("Unable to instantiate generated wirer for " + clazz, e.getCause());
     }
+    return null;
   }
 
   @Override
   public void onInitialize(final Component component) {
+    final Value value = cache.get(component.getClass());
+    if (value == null || value == Value.NONE) {
+      return;
+    }
     if (isAutoWiringPossible(component)) {
+      // only look up the context for classes that missed markup before
+      if (value.missingMarkup.size() > 0 && value.missingMarkup.get(MarkupContext.of(component)) != null) {
+        return;
+      }
       try {
-        Value value = cache.get(component.getClass());
-        value.performInitializeActions(component);
+        final long begin = System.nanoTime();
+        value.performInitializeActions(component, settings, listener);
+        listener.onInitialized(component.getClass(), System.nanoTime() - begin);
       }
       catch (final MarkupNotFoundException e) {
-        //Nothing to do
+        // markup does not change in deployment mode, do not look it up again
+        if (component.getApplication().usesDeploymentConfig()) {
+          value.missingMarkup.putIfAbsent(MarkupContext.of(component), Boolean.TRUE);
+        }
       }
     }
   }
@@ -163,95 +432,111 @@ public final class AutoWire implements IComponentInitializationListener, ICompon
     return component instanceof MarkupContainer && !(component instanceof TransparentWebMarkupContainer);
   }
 
-  private static Component buildComponent(Component component, final String id, Node child) {
-    Class<?> clazz = component.getClass();
-    while (Component.class.isAssignableFrom(clazz)) {
-      Component value = null;
-      // look for annotated field
-      for (Field iter : clazz.getDeclaredFields()) {
-        if (iter.isAnnotationPresent(AutoComponent.class)) {
-          value = getValue(component, iter);
-          if (value != null && value.getId().equals(id)) {
-            child.field = iter;
-            break;
-          }
-          else {
-            value = null;
-          }
-        }
-      }
-      if (value != null) {
-        return value;
-      }
-      clazz = clazz.getSuperclass();
-    }
-    return null;
+  private boolean isAutoWiringPossible(final Class<?> type) {
+    return MarkupContainer.class.isAssignableFrom(type) && !TransparentWebMarkupContainer.class.isAssignableFrom(type);
   }
 
   // set value on duplicated field of parent classes too!
-  private static void setValue(Component instance,
-                               final Component component,
-                               Field field) throws IllegalAccessException {
-    Class<?> clazz = field.getDeclaringClass();
+  private static FieldAccessor.Handle[] getTargets(FieldAccessor.Handle accessor) {
+    final List<FieldAccessor.Handle> targets = new ArrayList<FieldAccessor.Handle>();
+    targets.add(accessor);
+    final String name = accessor.getName();
+    Class<?> clazz = accessor.getField().getDeclaringClass().getSuperclass();
     while (Component.class.isAssignableFrom(clazz)) {
       for (Field f : clazz.getDeclaredFields()) {
-        if (f.getName().equals(field.getName())) {
-          boolean accessible = f.isAccessible();
-          f.setAccessible(true);
-          f.set(component, instance);
-          f.setAccessible(accessible);
+        if (f.getName().equals(name)) {
+          targets.add(FieldAccessor.of(f));
         }
       }
       clazz = clazz.getSuperclass();
     }
-  }
-
-  private Component getInstance(final Class<?> componentClass,
-                                final Component enclosing,
-                                final String id) throws NoSuchMethodException,
-                                                 InstantiationException,
-                                                 IllegalAccessException,
-                                                 IllegalArgumentException,
-                                                 InvocationTargetException {
-    if (componentClass.getEnclosingClass() == null || Modifier.isStatic(componentClass.getModifiers())) {
-      // -- Static inner class or normal class
-      final Constructor<?> constructor = componentClass.getDeclaredConstructor(String.class);
-      constructor.setAccessible(true);
-      return (Component) constructor.newInstance(id);
-    }
-    else {
-      if (enclosing != null && componentClass.getEnclosingClass().isAssignableFrom(enclosing.getClass())) {
-        final Constructor<?> constructor = componentClass.getDeclaredConstructor(componentClass.getEnclosingClass(),
-                                                                                 String.class);
-        constructor.setAccessible(true);
-        return (Component) constructor.newInstance(enclosing, id);
-      }
-      throw new RuntimeException("Unable to initialize inner class "
-                                 + componentClass.getClass().getSimpleName() + " with id " + id
-                                 + ". Enclosing class is not in the component hierarchy.");
-    }
+    return targets.toArray(new FieldAccessor.Handle[targets.size()]);
   }
 
   private static class Value {
 
-    private static final int THRESHOLD_MILLIS = 8 * 24 * 60 * 60 * 1000;
-
-    private final Map<String, Node> cache = new ConcurrentHashMap<String, Node>();
-    private final List<Action> instantiationActions;
+    // per class, a power of two
+    private static final int RECENT_PLANS = 16;
+
+    // shared by all classes without anything to wire
+    static final Value NONE = new Value(Collections.<Action> emptyList(),
+                                        Collections.<FieldAccessor> emptyList(),
+                                        Collections.<Action> emptyList(),
+                                        Collections.<String, Integer> emptyMap(),
+                                        Collections.<Integer> emptyList(),
+                                        false,
+                                        new AutoWireSettings(),
+                                        null);
+
+    private final PlanCache<Object, Plan> cache;
+    // plans by markup structure, shared by markup variants
+    private final PlanCache<String, Plan> skeletons;
+    // contexts in which components of the class have no markup
+    private final PlanCache<MarkupContext, Boolean> missingMarkup;
+    private final Action[] instantiationActions;
+    // annotated fields of the class hierarchy, subclass fields first
+    private final List<FieldAccessor> fields;
+    // creation of the field's component deferred until it is found in markup, or null
+    private final Action[] creators;
+    // injected fields by component id, shadowed fields of super classes left out
+    private final Map<String, Integer> fieldsById;
+    // fields looked up by the id of their current value, in field order
+    private final int[] unindexed;
     private final boolean hasAutoComponentAnnotatedFields;
-
-    public Value(List<Action> instantiationActions, boolean hasAutoComponentAnnotatedFields) {
-      this.instantiationActions = instantiationActions;
+    // null if markup is not reloaded
+    private final MarkupWatch watch;
+    // recently used plans by markup key hash, looked up without allocating a
+    // key. A key is in its slot or the next one, so two markups with the same
+    // slot do not replace each other. A hit touches the cache entry, so plans
+    // used from here are not evicted as idle. Slots of removed entries are
+    // cleared after eviction. Not volatile: a stale read only takes the
+    // regular path
+    private final RecentPlan[] recent = new RecentPlan[RECENT_PLANS];
+    // one instance of equal plans, e.g. of locales and styles, kept as long as
+    // a cache holds it. Only used when a plan is built
+    private final Map<Plan, WeakReference<Plan>> interned = new WeakHashMap<Plan, WeakReference<Plan>>();
+
+    public Value(List<Action> instantiationActions,
+                 List<FieldAccessor> fields,
+                 List<Action> creators,
+                 Map<String, Integer> fieldsById,
+                 List<Integer> unindexed,
+                 boolean hasAutoComponentAnnotatedFields,
+                 AutoWireSettings settings,
+                 MarkupWatch watch) {
+      this.cache = new PlanCache<Object, Plan>(settings.getPlanCacheSize(),
+                                               settings.getPlanIdleSeconds(),
+                                               new Runnable() {
+
+                                                 @Override
+                                                 public void run() {
+                                                   forgetRemoved();
+                                                 }
+                                               });
+      this.skeletons = new PlanCache<String, Plan>(settings.getPlanCacheSize(), settings.getPlanIdleSeconds());
+      this.missingMarkup = new PlanCache<MarkupContext, Boolean>(settings.getPlanCacheSize(),
+                                                                 settings.getPlanIdleSeconds());
+      this.instantiationActions = instantiationActions.toArray(new Action[instantiationActions.size()]);
+      this.fields = fields;
+      this.creators = creators.toArray(new Action[creators.size()]);
+      this.fieldsById = fieldsById;
+      this.unindexed = new int[unindexed.size()];
+      for (int i = 0; i < this.unindexed.length; i++) {
+        this.unindexed[i] = unindexed.get(i);
+      }
       this.hasAutoComponentAnnotatedFields = hasAutoComponentAnnotatedFields;
+      this.watch = watch;
     }
 
     public void performInstantiationActions(Component component) {
-      for (Action action : instantiationActions) {
-        action.perform(component);
+      for (int i = 0; i < instantiationActions.length; i++) {
+        instantiationActions[i].perform(component);
       }
     }
 
-    public void performInitializeActions(Component component) {
+    public void performInitializeActions(final Component component,
+                                         final AutoWireSettings settings,
+                                         final AutoWireListener listener) {
       if (!hasAutoComponentAnnotatedFields) {
         return;
       }
@@ -262,88 +547,209 @@ public final class AutoWire implements IComponentInitializationListener, ICompon
         return;
       }
 
-      String key = markup.toString(false);
-      Node node = cache.get(key);
-      if (node == null) {
+      // steady state, e.g. siblings in a repeater: no key, no cache lookup
+      final RecentPlan recent = getRecent(markup);
+      if (recent != null) {
+        listener.onMarkupCache(component.getClass(), true);
+        initialize(recent.entry.get(), component);
+        return;
+      }
+
+      final Object key = MarkupKey.of(component, markup);
+      PlanCache.Entry<Plan> entry = cache.getEntry(key);
+      Plan plan;
+      if (entry != null) {
+        listener.onMarkupCache(component.getClass(), true);
+        plan = entry.get();
+      }
+      else {
         if (log.isTraceEnabled()) {
-          log.trace("MARKUP MISS");
+          log.trace("MARKUP MISS " + key);
         }
-        synchronized (AutoWire.class) {
-          node = cache.get(key);
-          if (node == null) {
-            node = getNode(component, markup);
-            cache.put(key, node);
-          }
+        listener.onMarkupCache(component.getClass(), false);
+        if (settings.isTieredPlanBuilding()) {
+          plan = buildTiered(component, markup, key, settings, listener);
+        }
+        else {
+          plan = cache.get(key, new Callable<Plan>() {
+
+            @Override
+            public Plan call() {
+              final Object event = Events.beginPlanBuild();
+              final long begin = System.nanoTime();
+              final Plan plan = buildPlan(component, markup, settings);
+              listener.onPlanBuilt(component.getClass(), System.nanoTime() - begin);
+              Events.endPlanBuild(event, component.getClass(), key, markup.size(), plan);
+              watchMarkup(key);
+              return plan;
+            }
+          });
         }
       }
 
-      node.lastUsed = System.currentTimeMillis();
-      node.initialize(component);
+      if (key instanceof MarkupKey) {
+        if (entry == null) {
+          entry = cache.getEntry(key);
+        }
+        // null if already evicted
+        if (entry != null) {
+          putRecent((MarkupKey) key, entry);
+        }
+      }
+      initialize(plan, component);
+    }
 
-      cleanup();
+    private static void initialize(Plan plan, Component component) {
+      final Object event = Events.beginInitialization();
+      plan.initialize(component);
+      Events.endInitialization(event, component.getClass(), plan);
     }
 
-    // avoid memory leaks if markup changes often.
-    private void cleanup() {
-      if (cache.size() > 30) {
-        long threshold = System.currentTimeMillis() - THRESHOLD_MILLIS;
-        for (Iterator<Entry<String, Node>> iterator = cache.entrySet().iterator(); iterator.hasNext();) {
-          Entry<String, Node> next = iterator.next();
-          if (next.getValue().lastUsed < threshold) {
-            iterator.remove();
+    /**
+     * Wires with a plan already shared by structure, or with a plan of its own
+     * right away. Sharing it by structure is left to the background thread.
+     */
+    private Plan buildTiered(Component component,
+                             IMarkupFragment markup,
+                             final Object key,
+                             AutoWireSettings settings,
+                             AutoWireListener listener) {
+      final Object event = Events.beginPlanBuild();
+      final long begin = System.nanoTime();
+      final MarkupSkeleton skeleton = MarkupSkeleton.of(component, markup);
+      final Plan shared = settings.isKeyPlansByStructure() ? skeletons.get(skeleton.getKey()) : null;
+      final Plan plan = shared != null ? shared : getPlan(component, skeleton);
+      listener.onPlanBuilt(component.getClass(), System.nanoTime() - begin);
+      Events.endPlanBuild(event, component.getClass(), key, markup.size(), plan);
+      // concurrent misses each build their own plan, the first one is cached
+      if (cache.putIfAbsent(key, plan) != null) {
+        return plan;
+      }
+      watchMarkup(key);
+      if (settings.isKeyPlansByStructure() && shared == null) {
+        Background.execute(new Runnable() {
+
+          @Override
+          public void run() {
+            optimize(key, skeleton, plan);
           }
+        });
+      }
+      return plan;
+    }
+
+    // second tier of plan building, on the background thread
+    private void optimize(Object key, MarkupSkeleton skeleton, Plan plan) {
+      final Plan shared = skeletons.putIfAbsent(skeleton.getKey(), plan);
+      if (shared != null && cache.replace(key, plan, shared)) {
+        forgetRemoved();
+      }
+    }
+
+    private RecentPlan getRecent(IMarkupFragment markup) {
+      final int slot = MarkupKey.hash(markup) & (RECENT_PLANS - 1);
+      RecentPlan recent = this.recent[slot];
+      if (recent != null && recent.key.matches(markup) && !recent.entry.isRemoved()) {
+        return recent;
+      }
+      recent = this.recent[(slot + 1) & (RECENT_PLANS - 1)];
+      if (recent != null && recent.key.matches(markup) && !recent.entry.isRemoved()) {
+        return recent;
+      }
+      return null;
+    }
+
+    private void putRecent(MarkupKey key, PlanCache.Entry<Plan> entry) {
+      int slot = key.hashCode() & (RECENT_PLANS - 1);
+      final RecentPlan existing = this.recent[slot];
+      if (existing != null && !existing.key.equals(key)) {
+        slot = (slot + 1) & (RECENT_PLANS - 1);
+      }
+      this.recent[slot] = new RecentPlan(key, entry);
+    }
+
+    // clear the slots of entries no longer in the cache, so their plans and
+    // markup are not kept beyond the cache bound
+    private void forgetRemoved() {
+      for (int i = 0; i < recent.length; i++) {
+        final RecentPlan plan = recent[i];
+        if (plan != null && plan.entry.isRemoved()) {
+          recent[i] = null;
+        }
+      }
+    }
+
+    int getRecentPlanCount() {
+      int count = 0;
+      for (int i = 0; i < recent.length; i++) {
+        if (recent[i] != null) {
+          count++;
+        }
+      }
+      return count;
+    }
+
+    void sweep() {
+      cache.sweep();
+    }
+
+    private void watchMarkup(Object key) {
+      if (watch != null && key instanceof MarkupKey) {
+        watch.watch(((MarkupKey) key).getStream());
+      }
+    }
+
+    // forget the plans built for the markup
+    void invalidate(MarkupResourceStream markup) {
+      for (Object key : cache.keys()) {
+        if (key instanceof MarkupKey && ((MarkupKey) key).getStream() == markup) {
+          cache.remove(key);
         }
       }
+      forgetRemoved();
     }
 
-    private Node getNode(Component component, IMarkupFragment markup) {
+    private Plan buildPlan(Component component, IMarkupFragment markup, AutoWireSettings settings) {
+      final MarkupSkeleton skeleton = MarkupSkeleton.of(component, markup);
+      if (!settings.isKeyPlansByStructure()) {
+        return getPlan(component, skeleton);
+      }
+      Plan plan = skeletons.get(skeleton.getKey());
+      if (plan == null) {
+        plan = getPlan(component, skeleton);
+        final Plan existing = skeletons.putIfAbsent(skeleton.getKey(), plan);
+        if (existing != null) {
+          plan = existing;
+        }
+      }
+      return plan;
+    }
 
-      final MarkupStream stream = new MarkupStream(markup);
+    private Plan getPlan(Component component, MarkupSkeleton skeleton) {
 
       final Stack<AtomicReference<Component>> stack = new Stack<AtomicReference<Component>>();
       stack.push(new AtomicReference<Component>(component));
 
-      Node node = new Node();
+      final Plan.Builder plan = new Plan.Builder();
+      // index of the current parent in the plan, -1 for the component itself
+      int current = -1;
 
       // detect borders.
       boolean addToBorder = false;
 
       if (log.isTraceEnabled()) {
-        log.trace("Performing auto wiring for component " + component);
-      }
-
-      // no associated markup: component tag is part of the markup
-      MarkupElement containerTag = null;
-      //TODO current criteria is fragile! find better way to check if component tag of component is part its markup.
-      if (skipFirstComponentTag(component, stream)) {
-        if (log.isTraceEnabled()) {
-          log.trace("Skipped component tag " + stream.get());
-        }
-        containerTag = stream.get();
-        stream.next();
+        log.trace("Performing auto wiring for component " + component + " with markup " + skeleton);
       }
 
-      while (stream.skipUntil(ComponentTag.class)) {
-        final ComponentTag tag = stream.getTag();
-
-        if (log.isTraceEnabled()) {
-          log.trace("Processing tag " + tag);
-        }
+      for (int i = 0; i < skeleton.size(); i++) {
+        final byte type = skeleton.getType(i);
 
         // track border tags
-        if (tag instanceof WicketTag) {
-          if (((WicketTag) tag).isBorderTag() && tag.isOpen()) {
-            addToBorder = true;
-          }
-          else if (((WicketTag) tag).isBodyTag() && tag.isOpen()) {
-            addToBorder = false;
-          }
-          else if (((WicketTag) tag).isBodyTag() && tag.isClose()) {
-            addToBorder = true;
-          }
-          else if (((WicketTag) tag).isBorderTag() && tag.isClose()) {
-            addToBorder = false;
-          }
+        if (type == MarkupSkeleton.BORDER) {
+          addToBorder = true;
+        }
+        else if (type == MarkupSkeleton.BODY) {
+          addToBorder = false;
         }
 
         if (log.isTraceEnabled()) {
@@ -351,189 +757,290 @@ public final class AutoWire implements IComponentInitializationListener, ICompon
         }
 
         // maintain bread crumbs and build components
-        if (isComponentTag(tag)) {
-          if (tag.isOpen() || tag.isOpenClose()) {
-            final Component container = stack.peek().get();
-            final Component cmp;
-            final Node child = new Node();
+        if (type == MarkupSkeleton.OPEN || type == MarkupSkeleton.OPEN_CLOSE) {
+          final String id = skeleton.getId(i);
+          final Component container = stack.peek().get();
+          final int field;
 
-            if (log.isTraceEnabled()) {
-              log.trace("Current parent component is " + container);
+          if (log.isTraceEnabled()) {
+            log.trace("Current parent component is " + container);
+          }
+          if (container == null) {
+            field = -1;
+          }
+          else {
+            field = buildComponent(component, id);
+          }
+          final Component cmp = field < 0 ? null : fields.get(field).get(component);
+
+          if (log.isTraceEnabled()) {
+            log.trace("Resolved component is " + cmp + ". Adding to parent now.");
+          }
+
+          int index = -1;
+          if (cmp != null) {
+            if (container instanceof MarkupContainer) {
+              index = plan.add(current, fields.get(field), addToBorder && container instanceof Border, creators[field]);
             }
-            if (container == null) {
-              cmp = null;
+            else if (container == null) {
+              throw new RuntimeException("component " + id + " was auto wired, but its parent not!");
             }
             else {
-              cmp = buildComponent(component, tag.getId(), child);
+              throw new RuntimeException("only containers may contain child elements. type of " + container
+                                         + " is not a container!");
             }
-
+          }
+          // push even if cmp is null, to track if parent is auto-wired
+          if (type == MarkupSkeleton.OPEN) {
             if (log.isTraceEnabled()) {
-              log.trace("Resolved component is " + cmp + ". Adding to parent now.");
+              log.trace("Tag has a body. Adding to stack now.");
             }
-
+            stack.push(new AtomicReference<Component>(cmp));
             if (cmp != null) {
-              if (container instanceof MarkupContainer) {
-                if (addToBorder && container instanceof Border) {
-                  child.border = true;
-                }
-                else {
-                  child.border = false;
-                }
-                child.id = cmp.getId();
-                node.add(child);
-              }
-              else if (container == null) {
-                throw new RuntimeException("component " + tag.getId()
-                                           + " was auto wired, but its parent not!");
-              }
-              else {
-                throw new RuntimeException("only containers may contain child elements. type of " + container
-                                           + " is not a container!");
-              }
+              current = index;
             }
-            // push even if cmp is null, to track if parent is auto-wired
-            if (tag.isOpen() && !tag.hasNoCloseTag()) {
-              if (log.isTraceEnabled()) {
-                log.trace("Tag has a body. Adding to stack now.");
-              }
-              stack.push(new AtomicReference<Component>(cmp));
-              if (cmp != null) {
-                node = child;
-              }
-              if (log.isTraceEnabled()) {
-                log.trace("Current stack: " + stack);
-              }
+            if (log.isTraceEnabled()) {
+              log.trace("Current stack: " + stack);
             }
           }
-          else if (tag.isClose() && !tag.getOpenTag().isAutoComponentTag()) {
-            // the container tag is part of the inherited markup. do not pop stack on container tag close.
-            if (containerTag == null || !tag.closes(containerTag)) {
-              if (log.isTraceEnabled()) {
-                log.trace("Tag is closing. Pop the stack now.");
-              }
-              if (stack.pop().get() != null) {
-                node = node.parent;
-              }
-              if (log.isTraceEnabled()) {
-                log.trace("Current stack: " + stack);
-              }
-            }
+        }
+        else if (type == MarkupSkeleton.CLOSE) {
+          if (log.isTraceEnabled()) {
+            log.trace("Tag is closing. Pop the stack now.");
+          }
+          if (stack.pop().get() != null) {
+            current = plan.getParent(current);
+          }
+          if (log.isTraceEnabled()) {
+            log.trace("Current stack: " + stack);
           }
         }
         if (log.isTraceEnabled()) {
           log.trace("--- Tag done. ---");
         }
-        stream.next();
       }
       if (stack.size() != 1) {
         throw new RuntimeException("Stack must only contain one element " + stack);
       }
 
-      return node;
+      return intern(plan.build());
     }
 
-    private boolean skipFirstComponentTag(Component component, MarkupStream stream) {
-      if (stream.get() instanceof ComponentTag
-          && ((ComponentTag) stream.get()).getId().equals(component.getId())) {
-        return true;
+    private Plan intern(Plan plan) {
+      synchronized (interned) {
+        final WeakReference<Plan> existing = interned.get(plan);
+        final Plan shared = existing == null ? null : existing.get();
+        if (shared != null) {
+          return shared;
+        }
+        interned.put(plan, new WeakReference<Plan>(plan));
+        return plan;
       }
-      else if (component instanceof ListItem) {
-        return true;
+    }
+
+    // index of the field for the component id, or -1. The first matching
+    // field wins, as if all fields were scanned subclass first
+    private int buildComponent(Component component, final String id) {
+      final Integer indexed = fieldsById.get(id);
+      for (int i : unindexed) {
+        if (indexed != null && i > indexed) {
+          break;
+        }
+        if (matches(component, i, id)) {
+          return i;
+        }
       }
-      else {
-        return false;
+      if (indexed != null && matches(component, indexed, id)) {
+        return indexed;
       }
+      // the injected component was replaced, or a field was assigned a
+      // component of another id than its own. Look at all fields
+      for (int i = 0; i < fields.size(); i++) {
+        if (matches(component, i, id)) {
+          return i;
+        }
+      }
+      return -1;
     }
 
-    private boolean isComponentTag(ComponentTag tag) {
-      return !(tag instanceof WicketTag) && !tag.isAutoComponentTag()
-             || tag.getName().equals(WicketContainerResolver.CONTAINER);
+    private boolean matches(Component component, int field, String id) {
+      final Component value = fields.get(field).get(component);
+      if (value != null) {
+        return value.getId().equals(id);
+      }
+      if (creators[field] != null && creators[field].getId().equals(id)) {
+        // found in markup, create it now
+        creators[field].perform(component);
+        return true;
+      }
+      return false;
     }
 
   }
 
-  private static class ComponentCache extends ConcurrentHashMap<Class<? extends Component>, Value> {
+  // the cache entry of a plan and the key of the markup it was resolved for
+  private static class RecentPlan {
+
+    private final MarkupKey key;
+    private final PlanCache.Entry<Plan> entry;
 
+    RecentPlan(MarkupKey key, PlanCache.Entry<Plan> entry) {
+      this.key = key;
+      this.entry = entry;
+    }
   }
 
-  private static class Node {
+  // notifies several listeners in registration order
+  private static class Listeners implements AutoWireListener {
 
-    Node parent = null;
-    Field field = null;
-    List<Node> childNodes = new ArrayList<Node>();
-    boolean border = false;
-    public String id = null;
-    long lastUsed = System.currentTimeMillis();
+    private final AutoWireListener[] listeners;
 
-    public void add(Node child) {
-      child.parent = this;
-      childNodes.add(child);
+    Listeners(List<AutoWireListener> listeners) {
+      this.listeners = listeners.toArray(new AutoWireListener[listeners.size()]);
     }
 
     @Override
-    public String toString() {
-      return "Node{" + "field=" + ((field != null) ? field.getName() : null) + ", childNodes=" + childNodes
-             + ", border=" + border + ", id='" + id + '\'' + '}';
+    public void onClassCache(Class<? extends Component> type, boolean hit) {
+      for (int i = 0; i < listeners.length; i++) {
+        listeners[i].onClassCache(type, hit);
+      }
     }
 
-    public void initialize(Component component) {
-      initialize(component, component);
+    @Override
+    public void onMarkupCache(Class<? extends Component> type, boolean hit) {
+      for (int i = 0; i < listeners.length; i++) {
+        listeners[i].onMarkupCache(type, hit);
+      }
     }
 
-    private void initialize(Component root, Component parent) {
-      for (Node child : childNodes) {
-        Component value = getValue(root, child.field);
-        if (child.border) {
-          ((Border) parent).addToBorder(value);
-        }
-        else {
-          ((MarkupContainer) parent).add(value);
-        }
-        if (!child.childNodes.isEmpty()) {
-          child.initialize(root, value);
-        }
+    @Override
+    public void onPlanBuilt(Class<? extends Component> type, long nanos) {
+      for (int i = 0; i < listeners.length; i++) {
+        listeners[i].onPlanBuilt(type, nanos);
+      }
+    }
+
+    @Override
+    public void onInstantiated(Class<? extends Component> type, long nanos) {
+      for (int i = 0; i < listeners.length; i++) {
+        listeners[i].onInstantiated(type, nanos);
       }
     }
 
+    @Override
+    public void onInitialized(Class<? extends Component> type, long nanos) {
+      for (int i = 0; i < listeners.length; i++) {
+        listeners[i].onInitialized(type, nanos);
+      }
+    }
   }
 
-  private interface Action {
+  // registers the metrics in the platform MBean server while the application lives
+  private static class MBeanRegistration implements IApplicationListener {
+
+    private final ObjectName name;
+
+    private MBeanRegistration(ObjectName name) {
+      this.name = name;
+    }
+
+    static void register(Application application, AutoWireMetrics metrics) {
+      try {
+        final ObjectName name = new ObjectName("com.github.wicket.autowire:type=AutoWire,application="
+                                               + ObjectName.quote(application.getName()));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, name);
+        application.getApplicationListeners().add(new MBeanRegistration(name));
+      }
+      catch (JMException e) {
+        log.warn("Unable to register auto-wire metrics", e);
+      }
+    }
+
+    @Override
+    public void onAfterInitialized(Application application) {
+    }
+
+    @Override
+    public void onBeforeDestroyed(Application application) {
+      try {
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+      }
+      catch (JMException e) {
+        log.warn("Unable to unregister auto-wire metrics", e);
+      }
+    }
+  }
+
+  private static class ComponentCache extends ConcurrentHashMap<Class<? extends Component>, Value> {
+
+    private final SingleFlight<Class<? extends Component>, Value> loading = new SingleFlight<Class<? extends Component>, Value>();
+
+  }
+
+
+  interface Action {
+
+    // the component id, or null if the action is not about a single component
+    String getId();
+
     void perform(Component component);
   }
 
-  private class AssignInstanceAction implements Action {
+  private static class AssignInstanceAction implements Action {
 
-    private final Field field;
+    private final ConstructorFactory factory;
+    // the annotated field and the fields it shadows in super classes
+    private final FieldAccessor.Handle[] targets;
     private final String id;
 
-    public AssignInstanceAction(Field field, String id) {
-      this.field = field;
+    public AssignInstanceAction(ConstructorFactory factory, FieldAccessor.Handle[] targets, String id) {
+      this.factory = factory;
+      this.targets = targets;
       this.id = id;
     }
 
     @Override
     public String toString() {
-      return "Assign instance with id " + id + " to field " + field.getName();
+      return "Assign instance with id " + id + " to field " + targets[0].getName();
+    }
+
+    @Override
+    public String getId() {
+      return id;
     }
 
     @Override
     public void perform(Component component) {
-      try {
-        Component instance = getInstance(field.getType(), component, id);
-        setValue(instance, component, field);
-      }
-      catch (NoSuchMethodException e) {
-        throw new WicketRuntimeException(e);
-      }
-      catch (InstantiationException e) {
-        throw new WicketRuntimeException(e);
-      }
-      catch (IllegalAccessException e) {
-        throw new WicketRuntimeException(e);
-      }
-      catch (InvocationTargetException e) {
-        throw new WicketRuntimeException(e);
+      final Object event = Events.beginInstantiation();
+      Component instance = factory.create(component, id);
+      for (FieldAccessor.Handle target : targets) {
+        target.set(component, instance);
       }
+      Events.endInstantiation(event, component.getClass(), id, instance.getClass());
+    }
+  }
+
+  private static class GeneratedInstantiationAction implements Action {
+
+    private final AutoWirer<Component> wirer;
+
+    public GeneratedInstantiationAction(AutoWirer<Component> wirer) {
+      this.wirer = wirer;
+    }
+
+    @Override
+    public String toString() {
+      return "Instantiate fields with " + wirer.getClass().getName();
+    }
+
+    @Override
+    public String getId() {
+      return null;
+    }
+
+    @Override
+    public void perform(Component component) {
+      wirer.instantiate(component);
     }
   }
 }
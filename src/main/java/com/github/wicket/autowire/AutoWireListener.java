@@ -0,0 +1,53 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package com.github.wicket.autowire;
+
+import org.apache.wicket.Component;
+
+/**
+ * Receives events of auto-wiring, register with
+ * {@link AutoWireSettings#addListener(AutoWireListener)}. Methods are called on
+ * request threads, often once per component, so they must be fast and must not
+ * throw.
+ */
+public interface AutoWireListener {
+
+  /**
+   * A component was instantiated. On a miss the class was inspected. Hits are
+   * only reported for classes with something to wire.
+   */
+  void onClassCache(Class<? extends Component> type, boolean hit);
+
+  /**
+   * A component with auto components was initialized. On a miss a wiring plan
+   * was resolved for its markup.
+   */
+  void onMarkupCache(Class<? extends Component> type, boolean hit);
+
+  /**
+   * A wiring plan was resolved for new markup of the component class.
+   */
+  void onPlanBuilt(Class<? extends Component> type, long nanos);
+
+  /**
+   * The auto components of a component were assigned.
+   */
+  void onInstantiated(Class<? extends Component> type, long nanos);
+
+  /**
+   * The auto components of a component were added to their parents.
+   */
+  void onInitialized(Class<? extends Component> type, long nanos);
+
+}
@@ -0,0 +1,240 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package com.github.wicket.autowire;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.wicket.Component;
+
+/**
+ * Cache and timing statistics of an {@link AutoWire} instance. Always
+ * collected, see {@link AutoWire#getMetrics()}. Exposed over JMX if
+ * {@link AutoWireSettings#setJmxEnabled(boolean)} is set.
+ */
+public class AutoWireMetrics implements AutoWireListener, AutoWireMetricsMBean {
+
+  private final AutoWire autoWire;
+  // hits happen for every component, count them without contention
+  private final Counter classHits = new Counter();
+  private final AtomicLong classMisses = new AtomicLong();
+  private final Counter markupHits = new Counter();
+  private final AtomicLong markupMisses = new AtomicLong();
+  private final AtomicLong planBuilds = new AtomicLong();
+  private final AtomicLong planBuildNanos = new AtomicLong();
+  private final ConcurrentMap<Class<? extends Component>, Timing> timings = new ConcurrentHashMap<Class<? extends Component>, Timing>();
+
+  AutoWireMetrics(AutoWire autoWire) {
+    this.autoWire = autoWire;
+  }
+
+  @Override
+  public void onClassCache(Class<? extends Component> type, boolean hit) {
+    if (hit) {
+      classHits.increment();
+    }
+    else {
+      classMisses.incrementAndGet();
+    }
+  }
+
+  @Override
+  public void onMarkupCache(Class<? extends Component> type, boolean hit) {
+    if (hit) {
+      markupHits.increment();
+    }
+    else {
+      markupMisses.incrementAndGet();
+    }
+  }
+
+  @Override
+  public void onPlanBuilt(Class<? extends Component> type, long nanos) {
+    planBuilds.incrementAndGet();
+    planBuildNanos.addAndGet(nanos);
+  }
+
+  @Override
+  public void onInstantiated(Class<? extends Component> type, long nanos) {
+    getTiming(type, true).instantiated(nanos);
+  }
+
+  @Override
+  public void onInitialized(Class<? extends Component> type, long nanos) {
+    getTiming(type, true).initialized(nanos);
+  }
+
+  @Override
+  public long getClassCacheHits() {
+    return classHits.get();
+  }
+
+  @Override
+  public long getClassCacheMisses() {
+    return classMisses.get();
+  }
+
+  @Override
+  public long getMarkupCacheHits() {
+    return markupHits.get();
+  }
+
+  @Override
+  public long getMarkupCacheMisses() {
+    return markupMisses.get();
+  }
+
+  @Override
+  public long getPlanBuilds() {
+    return planBuilds.get();
+  }
+
+  @Override
+  public long getPlanBuildNanos() {
+    return planBuildNanos.get();
+  }
+
+  @Override
+  public int getCachedClasses() {
+    return autoWire.getCachedClassCount();
+  }
+
+  @Override
+  public int getCachedPlans() {
+    return autoWire.getCachedPlanCount();
+  }
+
+  /**
+   * Rough estimate of the memory retained by cached classes and plans, not
+   * counting the markup and classes they refer to.
+   */
+  @Override
+  public long getEstimatedCacheBytes() {
+    return autoWire.getEstimatedCacheBytes();
+  }
+
+  /**
+   * @return timing of the component class, or {@code null} if no component of
+   *         it was auto-wired yet.
+   */
+  public Timing getTiming(Class<? extends Component> type) {
+    return getTiming(type, false);
+  }
+
+  /**
+   * Timings of all auto-wired component classes, the most expensive first.
+   */
+  @Override
+  public String[] getClassTimings() {
+    final List<Map.Entry<Class<? extends Component>, Timing>> entries = new ArrayList<Map.Entry<Class<? extends Component>, Timing>>(timings.entrySet());
+    Collections.sort(entries, new Comparator<Map.Entry<Class<? extends Component>, Timing>>() {
+
+      @Override
+      public int compare(Map.Entry<Class<? extends Component>, Timing> o1,
+                         Map.Entry<Class<? extends Component>, Timing> o2) {
+        final long total1 = o1.getValue().getTotalNanos();
+        final long total2 = o2.getValue().getTotalNanos();
+        return total1 > total2 ? -1 : total1 == total2 ? 0 : 1;
+      }
+    });
+    final String[] result = new String[entries.size()];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = entries.get(i).getKey().getName() + ": " + entries.get(i).getValue();
+    }
+    return result;
+  }
+
+  @Override
+  public void reset() {
+    classHits.reset();
+    classMisses.set(0);
+    markupHits.reset();
+    markupMisses.set(0);
+    planBuilds.set(0);
+    planBuildNanos.set(0);
+    timings.clear();
+  }
+
+  private Timing getTiming(Class<? extends Component> type, boolean create) {
+    Timing timing = timings.get(type);
+    if (timing == null && create) {
+      timing = new Timing();
+      final Timing existing = timings.putIfAbsent(type, timing);
+      if (existing != null) {
+        timing = existing;
+      }
+    }
+    return timing;
+  }
+
+  /**
+   * Time spent auto-wiring components of one class.
+   */
+  public static class Timing {
+
+    private static final int INSTANTIATIONS = 0;
+    private static final int INSTANTIATION_NANOS = 1;
+    private static final int INITIALIZATIONS = 2;
+    private static final int INITIALIZATION_NANOS = 3;
+
+    // every component is counted, so count without contention
+    private final Counter counter = new Counter(4);
+
+    void instantiated(long nanos) {
+      counter.add(INSTANTIATIONS, 1);
+      counter.add(INSTANTIATION_NANOS, nanos);
+    }
+
+    void initialized(long nanos) {
+      counter.add(INITIALIZATIONS, 1);
+      counter.add(INITIALIZATION_NANOS, nanos);
+    }
+
+    public long getInstantiations() {
+      return counter.get(INSTANTIATIONS);
+    }
+
+    public long getInstantiationNanos() {
+      return counter.get(INSTANTIATION_NANOS);
+    }
+
+    public long getInitializations() {
+      return counter.get(INITIALIZATIONS);
+    }
+
+    public long getInitializationNanos() {
+      return counter.get(INITIALIZATION_NANOS);
+    }
+
+    long getTotalNanos() {
+      return getInstantiationNanos() + getInitializationNanos();
+    }
+
+    @Override
+    public String toString() {
+      final long instantiations = getInstantiations();
+      final long initializations = getInitializations();
+      return instantiations + " instantiations avg " + (instantiations == 0 ? 0 : getInstantiationNanos() / instantiations)
+             + "ns, " + initializations + " initializations avg "
+             + (initializations == 0 ? 0 : getInitializationNanos() / initializations) + "ns";
+    }
+  }
+
+}
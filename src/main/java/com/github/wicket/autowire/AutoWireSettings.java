@@ -0,0 +1,315 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package com.github.wicket.autowire;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.wicket.Component;
+
+/**
+ * Options for {@link AutoWire#install(org.apache.wicket.Application, AutoWireSettings)}.
+ */
+public class AutoWireSettings {
+
+  // wicket's own components never declare auto components
+  private static final String WICKET_PACKAGE = "org.apache.wicket.";
+
+  private boolean keyPlansByStructure = false;
+  private int planCacheSize = 64;
+  private int planIdleSeconds = 8 * 24 * 60 * 60;
+  private final List<String> scopePackages = new ArrayList<String>();
+  private Class<?> scopeMarker = null;
+  private final List<AutoWireListener> listeners = new ArrayList<AutoWireListener>();
+  private boolean jmxEnabled = false;
+  private final List<Class<? extends Component>> warmUpClasses = new ArrayList<Class<? extends Component>>();
+  private final List<String> warmUpPackages = new ArrayList<String>();
+  private int warmUpParallelism = Runtime.getRuntime().availableProcessors();
+  private boolean deferInstantiation = false;
+  private boolean tieredPlanBuilding = false;
+  private long slowRequestMillis = -1;
+  private final Map<Class<?>, ComponentFactory<?>> typeFactories = new HashMap<Class<?>, ComponentFactory<?>>();
+  private final Map<String, ComponentFactory<?>> namedFactories = new HashMap<String, ComponentFactory<?>>();
+
+  /**
+   * @see #setKeyPlansByStructure(boolean)
+   */
+  public boolean isKeyPlansByStructure() {
+    return keyPlansByStructure;
+  }
+
+  /**
+   * If enabled, markup that differs only in text, attributes or non component
+   * tags (typically styles, variations and locales) shares one wiring plan.
+   * Only component tag ids, their nesting and border placement are compared.
+   * Default is {@code false}.
+   */
+  public AutoWireSettings setKeyPlansByStructure(boolean keyPlansByStructure) {
+    this.keyPlansByStructure = keyPlansByStructure;
+    return this;
+  }
+
+  /**
+   * @see #setPlanCacheSize(int)
+   */
+  public int getPlanCacheSize() {
+    return planCacheSize;
+  }
+
+  /**
+   * Maximum number of wiring plans cached per component class. Components with
+   * generated markup may produce a new plan per markup, least recently used
+   * plans are evicted beyond this size. Default is 64.
+   */
+  public AutoWireSettings setPlanCacheSize(int planCacheSize) {
+    this.planCacheSize = planCacheSize;
+    return this;
+  }
+
+  /**
+   * @see #setPlanIdleSeconds(int)
+   */
+  public int getPlanIdleSeconds() {
+    return planIdleSeconds;
+  }
+
+  /**
+   * Plans unused for this time are evicted with the next eviction run. Default
+   * is 8 days.
+   */
+  public AutoWireSettings setPlanIdleSeconds(int planIdleSeconds) {
+    this.planIdleSeconds = planIdleSeconds;
+    return this;
+  }
+
+  /**
+   * Restricts auto-wiring to component classes in the given packages
+   * (including sub packages). Classes outside the scope are never inspected.
+   * Without packages and marker type all classes are in scope.
+   */
+  public AutoWireSettings addScopePackage(String packageName) {
+    scopePackages.add(packageName.endsWith(".") ? packageName : packageName + ".");
+    return this;
+  }
+
+  /**
+   * Restricts auto-wiring to component classes implementing or extending the
+   * given marker type. Can be combined with {@link #addScopePackage(String)}:
+   * a class is in scope if it matches either.
+   */
+  public AutoWireSettings setScopeMarker(Class<?> scopeMarker) {
+    this.scopeMarker = scopeMarker;
+    return this;
+  }
+
+  /**
+   * @return {@code true} if the component class may have auto components.
+   */
+  public boolean isInScope(Class<?> componentClass) {
+    final String name = componentClass.getName();
+    if (name.startsWith(WICKET_PACKAGE)) {
+      return false;
+    }
+    if (scopePackages.isEmpty() && scopeMarker == null) {
+      return true;
+    }
+    for (String scopePackage : scopePackages) {
+      if (name.startsWith(scopePackage)) {
+        return true;
+      }
+    }
+    return scopeMarker != null && scopeMarker.isAssignableFrom(componentClass);
+  }
+
+  /**
+   * Adds a listener notified of cache hits and misses and of the time spent
+   * auto-wiring. {@link AutoWire#getMetrics()} is always collected.
+   */
+  public AutoWireSettings addListener(AutoWireListener listener) {
+    listeners.add(listener);
+    return this;
+  }
+
+  public List<AutoWireListener> getListeners() {
+    return listeners;
+  }
+
+  /**
+   * @see #setJmxEnabled(boolean)
+   */
+  public boolean isJmxEnabled() {
+    return jmxEnabled;
+  }
+
+  /**
+   * If enabled, {@link AutoWireMetrics} are registered in the platform MBean
+   * server as {@code com.github.wicket.autowire:type=AutoWire,application=<name>}
+   * until the application is destroyed. Default is {@code false}.
+   */
+  public AutoWireSettings setJmxEnabled(boolean jmxEnabled) {
+    this.jmxEnabled = jmxEnabled;
+    return this;
+  }
+
+  /**
+   * Inspects the component class on install instead of on its first
+   * instantiation. Markup is only known for instances, so wiring plans are
+   * still built on first use.
+   */
+  public AutoWireSettings addWarmUpClass(Class<? extends Component> componentClass) {
+    warmUpClasses.add(componentClass);
+    return this;
+  }
+
+  public List<Class<? extends Component>> getWarmUpClasses() {
+    return warmUpClasses;
+  }
+
+  /**
+   * Inspects all component classes of the package and its sub packages on
+   * install. Directories and jars of the application's class loader are
+   * scanned.
+   *
+   * @see #addWarmUpClass(Class)
+   */
+  public AutoWireSettings addWarmUpPackage(String packageName) {
+    warmUpPackages.add(packageName);
+    return this;
+  }
+
+  public List<String> getWarmUpPackages() {
+    return warmUpPackages;
+  }
+
+  /**
+   * @see #setWarmUpParallelism(int)
+   */
+  public int getWarmUpParallelism() {
+    return warmUpParallelism;
+  }
+
+  /**
+   * Number of threads inspecting classes on install. Default is the number of
+   * processors.
+   */
+  public AutoWireSettings setWarmUpParallelism(int warmUpParallelism) {
+    this.warmUpParallelism = warmUpParallelism;
+    return this;
+  }
+
+  /**
+   * @see #setDeferInstantiation(boolean)
+   */
+  public boolean isDeferInstantiation() {
+    return deferInstantiation;
+  }
+
+  /**
+   * If enabled, injected components are not created on instantiation of their
+   * parent, but on its initialization, and only if their id is found in the
+   * active markup. Components omitted by a style or variation are never
+   * created and their fields stay {@code null}. Fields are matched by their
+   * declared id, so they cannot be used before the component is initialized,
+   * for example in the constructor or in {@code onInitialize()}. Classes with
+   * generated wirers are wired by reflection in this mode. Default is
+   * {@code false}.
+   */
+  public AutoWireSettings setDeferInstantiation(boolean deferInstantiation) {
+    this.deferInstantiation = deferInstantiation;
+    return this;
+  }
+
+  /**
+   * @see #setTieredPlanBuilding(boolean)
+   */
+  public boolean isTieredPlanBuilding() {
+    return tieredPlanBuilding;
+  }
+
+  /**
+   * If enabled, a component with markup that has no cached plan yet is wired
+   * right away with a plan built on the request thread, without waiting for
+   * concurrent builds of the same markup. Sharing it with structurally equal
+   * markup (see {@link #setKeyPlansByStructure(boolean)}) happens on a
+   * background thread, which then swaps the shared plan in. Default is
+   * {@code false}.
+   */
+  public AutoWireSettings setTieredPlanBuilding(boolean tieredPlanBuilding) {
+    this.tieredPlanBuilding = tieredPlanBuilding;
+    return this;
+  }
+
+  /**
+   * @see #setSlowRequestMillis(long)
+   */
+  public long getSlowRequestMillis() {
+    return slowRequestMillis;
+  }
+
+  /**
+   * If set, the time auto-wiring takes is summed up per request. For requests
+   * taking at least this long one line is logged with the time spent on
+   * instantiation, initialization and plan building, and the component
+   * classes that took longest. Default is {@code -1}, nothing is summed up.
+   */
+  public AutoWireSettings setSlowRequestMillis(long slowRequestMillis) {
+    this.slowRequestMillis = slowRequestMillis;
+    return this;
+  }
+
+  /**
+   * Creates the components of injected fields of exactly the given type with
+   * the factory instead of their id constructor, unless the field names a
+   * factory with {@link AutoComponent#factory()}. Generated wirers are not used
+   * while type factories are registered, as they call constructors directly.
+   */
+  public <T extends Component> AutoWireSettings addFactory(Class<T> type, ComponentFactory<? extends T> factory) {
+    typeFactories.put(type, factory);
+    return this;
+  }
+
+  /**
+   * Creates the components of injected fields annotated with
+   * {@code @AutoComponent(factory = name)} with the factory. The factory must
+   * create components assignable to the field.
+   */
+  public AutoWireSettings addFactory(String name, ComponentFactory<?> factory) {
+    namedFactories.put(name, factory);
+    return this;
+  }
+
+  /**
+   * @return the factory for components of exactly the type, or {@code null}
+   */
+  public ComponentFactory<?> getFactory(Class<?> type) {
+    return typeFactories.get(type);
+  }
+
+  /**
+   * @return the factory registered with the name, or {@code null}
+   */
+  public ComponentFactory<?> getFactory(String name) {
+    return namedFactories.get(name);
+  }
+
+  /**
+   * @return {@code true} if factories replace constructors of field types.
+   */
+  public boolean hasTypeFactories() {
+    return !typeFactories.isEmpty();
+  }
+
+}
@@ -0,0 +1,50 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package com.github.wicket.autowire;
+
+import org.apache.wicket.Component;
+
+/**
+ * Compile time generated wiring code for a component class. Implementations
+ * are written by the wicket-autowire-processor, live in the package of the
+ * component and are named after the component's binary name plus
+ * {@link #SUFFIX}. {@link AutoWire} uses them instead of reflection when
+ * present.
+ *
+ * @param <T>
+ *          the wired component class
+ */
+public interface AutoWirer<T extends Component> {
+
+  String SUFFIX = "$$AutoWirer";
+
+  /**
+   * @return names of all {@link AutoComponent} annotated fields of the class
+   *         hierarchy, sub class fields first.
+   */
+  String[] getFieldNames();
+
+  /**
+   * @return current value of the annotated field at the given index of
+   *         {@link #getFieldNames()}.
+   */
+  Component getField(T component, int index);
+
+  /**
+   * Assigns new instances to all injectable fields that are not initialized
+   * yet.
+   */
+  void instantiate(T component);
+
+}
@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package com.github.wicket.autowire;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs cache maintenance away from request threads. The single daemon thread
+ * terminates when idle, so nothing is left running after an application is
+ * undeployed.
+ */
+final class Background {
+
+  private static final Logger log = LoggerFactory.getLogger(Background.class);
+
+  private static final ThreadPoolExecutor executor = new ThreadPoolExecutor(1,
+                                                                            1,
+                                                                            30,
+                                                                            TimeUnit.SECONDS,
+                                                                            new LinkedBlockingQueue<Runnable>(),
+                                                                            new DaemonThreadFactory());
+
+  static {
+    executor.allowCoreThreadTimeOut(true);
+  }
+
+  private Background() {
+  }
+
+  static void execute(final Runnable task) {
+    executor.execute(new Runnable() {
+
+      @Override
+      public void run() {
+        try {
+          task.run();
+        }
+        catch (RuntimeException e) {
+          log.error("Background task failed", e);
+        }
+      }
+    });
+  }
+
+  // waits for the tasks submitted so far
+  static void flush() throws InterruptedException, ExecutionException {
+    executor.submit(new Runnable() {
+
+      @Override
+      public void run() {
+      }
+    }).get();
+  }
+
+  private static class DaemonThreadFactory implements ThreadFactory {
+
+    @Override
+    public Thread newThread(Runnable r) {
+      Thread thread = new Thread(r, "wicket-autowire");
+      thread.setDaemon(true);
+      // do not pin the class loader of the application that created the thread
+      thread.setContextClassLoader(null);
+      return thread;
+    }
+  }
+
+}
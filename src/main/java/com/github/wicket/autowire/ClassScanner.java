@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package com.github.wicket.autowire;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Finds the classes of a package and its sub packages in directories and jars
+ * of a class loader. Classes are loaded without being initialized.
+ */
+final class ClassScanner {
+
+  private static final Logger log = LoggerFactory.getLogger(ClassScanner.class);
+
+  private static final String CLASS_SUFFIX = ".class";
+
+  private ClassScanner() {
+  }
+
+  static List<Class<?>> scan(ClassLoader loader, String packageName) {
+    final List<Class<?>> classes = new ArrayList<Class<?>>();
+    final String path = packageName.replace('.', '/');
+    try {
+      final Enumeration<URL> urls = loader.getResources(path);
+      while (urls.hasMoreElements()) {
+        final URL url = urls.nextElement();
+        if ("file".equals(url.getProtocol())) {
+          scanDirectory(loader, new File(URLDecoder.decode(url.getPath(), "UTF-8")), packageName, classes);
+        }
+        else if ("jar".equals(url.getProtocol())) {
+          scanJar(loader, url, path, classes);
+        }
+        else {
+          log.warn("Unable to scan " + url + " for component classes");
+        }
+      }
+    }
+    catch (IOException e) {
+      log.warn("Unable to scan package " + packageName + " for component classes", e);
+    }
+    return classes;
+  }
+
+  private static void scanDirectory(ClassLoader loader, File directory, String packageName, List<Class<?>> classes) {
+    final File[] files = directory.listFiles();
+    if (files == null) {
+      return;
+    }
+    for (File file : files) {
+      if (file.isDirectory()) {
+        scanDirectory(loader, file, packageName + "." + file.getName(), classes);
+      }
+      else if (file.getName().endsWith(CLASS_SUFFIX)) {
+        load(loader, packageName + "." + file.getName().substring(0, file.getName().length() - CLASS_SUFFIX.length()), classes);
+      }
+    }
+  }
+
+  private static void scanJar(ClassLoader loader, URL url, String path, List<Class<?>> classes) throws IOException {
+    final URLConnection connection = url.openConnection();
+    if (!(connection instanceof JarURLConnection)) {
+      log.warn("Unable to scan " + url + " for component classes");
+      return;
+    }
+    final JarURLConnection jarConnection = (JarURLConnection) connection;
+    // do not keep the jar open, the class loader has its own handle
+    jarConnection.setUseCaches(false);
+    final JarFile jar = jarConnection.getJarFile();
+    try {
+      final Enumeration<JarEntry> entries = jar.entries();
+      while (entries.hasMoreElements()) {
+        final String name = entries.nextElement().getName();
+        if (name.startsWith(path + "/") && name.endsWith(CLASS_SUFFIX)) {
+          load(loader, name.substring(0, name.length() - CLASS_SUFFIX.length()).replace('/', '.'), classes);
+        }
+      }
+    }
+    finally {
+      jar.close();
+    }
+  }
+
+  private static void load(ClassLoader loader, String className, List<Class<?>> classes) {
+    try {
+      classes.add(Class.forName(className, false, loader));
+    }
+    catch (ClassNotFoundException e) {
+      log.debug("Unable to load " + className, e);
+    }
+    catch (LinkageError e) {
+      // e.g. optional dependencies missing
+      log.debug("Unable to load " + className, e);
+    }
+  }
+
+}
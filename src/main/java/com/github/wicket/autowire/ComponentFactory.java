@@ -0,0 +1,36 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package com.github.wicket.autowire;
+
+import org.apache.wicket.Component;
+
+/**
+ * Creates the components of annotated fields whose type has no constructor
+ * with the wicket id as the only parameter, or that need models or services.
+ * Register with {@link AutoWireSettings#addFactory(Class, ComponentFactory)}
+ * or {@link AutoWireSettings#addFactory(String, ComponentFactory)}. Factories
+ * are resolved once per field and called on request threads.
+ */
+public interface ComponentFactory<T extends Component> {
+
+  /**
+   * @param owner
+   *          the component declaring the field, its constructor may not have
+   *          completed yet
+   * @param id
+   *          wicket id of the component to create
+   */
+  T create(Component owner, String id);
+
+}
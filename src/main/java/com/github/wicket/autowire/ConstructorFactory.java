@@ -0,0 +1,192 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package com.github.wicket.autowire;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+import org.apache.wicket.Component;
+import org.apache.wicket.WicketRuntimeException;
+
+/**
+ * Creates component instances through a constructor handle that is resolved
+ * once per component type and owner class.
+ */
+abstract class ConstructorFactory {
+
+  abstract Component create(Component owner, String id);
+
+  /**
+   * @param componentClass
+   *          type of the annotated field
+   * @param ownerClass
+   *          class of the component that declares (or inherits) the field
+   */
+  static ConstructorFactory of(final Class<?> componentClass, final Class<?> ownerClass) {
+    try {
+      if (componentClass.getEnclosingClass() == null || Modifier.isStatic(componentClass.getModifiers())) {
+        // -- Static inner class or normal class
+        final Constructor<?> constructor = componentClass.getDeclaredConstructor(String.class);
+        return new StaticFactory(unreflect(constructor, MethodType.methodType(Component.class, String.class)));
+      }
+      else if (componentClass.getEnclosingClass().isAssignableFrom(ownerClass)) {
+        final Constructor<?> constructor = componentClass.getDeclaredConstructor(componentClass.getEnclosingClass(),
+                                                                                 String.class);
+        return new InnerClassFactory(unreflect(constructor,
+                                               MethodType.methodType(Component.class,
+                                                                     Component.class,
+                                                                     String.class)));
+      }
+      else {
+        return new FailingFactory(componentClass);
+      }
+    }
+    catch (final NoSuchMethodException e) {
+      return new FailingFactory(e);
+    }
+    catch (final IllegalAccessException e) {
+      return new FailingFactory(e);
+    }
+  }
+
+  /**
+   * @return the factory of the settings for the field, or the constructor of
+   *         the field type
+   */
+  static ConstructorFactory of(final Field field, final Class<?> ownerClass, final AutoWireSettings settings) {
+    final String name = field.getAnnotation(AutoComponent.class).factory();
+    if (!name.isEmpty()) {
+      final ComponentFactory<?> factory = settings.getFactory(name);
+      if (factory == null) {
+        return new FailingFactory(new IllegalArgumentException("No component factory named " + name + " for field "
+                                                               + field));
+      }
+      return new RegisteredFactory(factory, name, field);
+    }
+    final ComponentFactory<?> factory = settings.getFactory(field.getType());
+    return factory == null ? of(field.getType(), ownerClass) : new RegisteredFactory(factory,
+                                                                                     factory.getClass().getName(),
+                                                                                     field);
+  }
+
+  private static MethodHandle unreflect(Constructor<?> constructor, MethodType type) throws IllegalAccessException {
+    constructor.setAccessible(true);
+    return MethodHandles.lookup().unreflectConstructor(constructor).asType(type);
+  }
+
+  private static RuntimeException rethrow(Throwable e) {
+    if (e instanceof RuntimeException) {
+      return (RuntimeException) e;
+    }
+    if (e instanceof Error) {
+      throw (Error) e;
+    }
+    return new WicketRuntimeException(e);
+  }
+
+  private static final class StaticFactory extends ConstructorFactory {
+
+    private final MethodHandle constructor;
+
+    StaticFactory(MethodHandle constructor) {
+      this.constructor = constructor;
+    }
+
+    @Override
+    Component create(Component owner, String id) {
+      try {
+        return (Component) constructor.invokeExact(id);
+      }
+      catch (Throwable e) {
+        throw rethrow(e);
+      }
+    }
+  }
+
+  private static final class InnerClassFactory extends ConstructorFactory {
+
+    private final MethodHandle constructor;
+
+    InnerClassFactory(MethodHandle constructor) {
+      this.constructor = constructor;
+    }
+
+    @Override
+    Component create(Component owner, String id) {
+      try {
+        return (Component) constructor.invokeExact(owner, id);
+      }
+      catch (Throwable e) {
+        throw rethrow(e);
+      }
+    }
+  }
+
+  private static final class RegisteredFactory extends ConstructorFactory {
+
+    private final ComponentFactory<?> factory;
+    // the name of the factory, or its class
+    private final String name;
+    private final Field field;
+
+    RegisteredFactory(ComponentFactory<?> factory, String name, Field field) {
+      this.factory = factory;
+      this.name = name;
+      this.field = field;
+    }
+
+    @Override
+    Component create(Component owner, String id) {
+      final Component component = factory.create(owner, id);
+      if (component == null) {
+        throw new WicketRuntimeException("Component factory " + name + " returned null for field " + field
+                                         + " of " + owner.getClass().getName());
+      }
+      return component;
+    }
+  }
+
+  /**
+   * Defers resolution errors to the moment a component is actually created.
+   */
+  private static final class FailingFactory extends ConstructorFactory {
+
+    private final Class<?> innerClass;
+    private final Exception cause;
+
+    FailingFactory(Class<?> innerClass) {
+      this.innerClass = innerClass;
+      this.cause = null;
+    }
+
+    FailingFactory(Exception cause) {
+      this.innerClass = null;
+      this.cause = cause;
+    }
+
+    @Override
+    Component create(Component owner, String id) {
+      if (cause != null) {
+        throw new WicketRuntimeException(cause);
+      }
+      throw new RuntimeException("Unable to initialize inner class " + innerClass.getSimpleName() + " with id "
+                                 + id + ". Enclosing class is not in the component hierarchy.");
+    }
+  }
+
+}
@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package com.github.wicket.autowire;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counter for events of every request thread. Threads add to different cache
+ * lines, so counting does not contend, reading sums all of them. Several
+ * values counted together share the cache line of a thread.
+ */
+final class Counter {
+
+  // longs per cache line
+  private static final int PADDING = 8;
+  private static final int STRIPES = stripes();
+
+  private final AtomicLongArray cells = new AtomicLongArray(STRIPES * PADDING);
+
+  Counter() {
+    this(1);
+  }
+
+  Counter(int values) {
+    if (values > PADDING) {
+      throw new IllegalArgumentException("At most " + PADDING + " values fit in a cache line");
+    }
+  }
+
+  void increment() {
+    add(0, 1);
+  }
+
+  void add(int value, long delta) {
+    cells.getAndAdd(index() + value, delta);
+  }
+
+  long get() {
+    return get(0);
+  }
+
+  long get(int value) {
+    long sum = 0;
+    for (int i = 0; i < STRIPES; i++) {
+      sum += cells.get(i * PADDING + value);
+    }
+    return sum;
+  }
+
+  void reset() {
+    for (int i = 0; i < cells.length(); i++) {
+      cells.set(i, 0);
+    }
+  }
+
+  private static int index() {
+    return ((int) Thread.currentThread().getId() & (STRIPES - 1)) * PADDING;
+  }
+
+  // power of two, at least the number of processors
+  private static int stripes() {
+    int stripes = 1;
+    while (stripes < Runtime.getRuntime().availableProcessors() && stripes < 64) {
+      stripes <<= 1;
+    }
+    return stripes;
+  }
+
+}
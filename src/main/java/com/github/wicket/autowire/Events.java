@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package com.github.wicket.autowire;
+
+/**
+ * Java Flight Recorder events of auto-wiring, all disabled by default. Enable
+ * them in the recording settings, for example with
+ * {@code com.github.wicket.autowire.PlanBuild#enabled=true}. A disabled event
+ * costs a flag check, on JVMs without flight recorder nothing is recorded.
+ * The events are only compiled on Java 11 and later.
+ * <p>
+ * A begin method returns the started event, or {@code null} if it is not
+ * recorded. Only started events are passed to the end methods.
+ */
+final class Events {
+
+  // null if the JVM has no flight recorder, or the events were not compiled
+  private static final Recorder RECORDER = load();
+
+  private Events() {
+  }
+
+  static Object beginPlanBuild() {
+    return RECORDER == null ? null : RECORDER.beginPlanBuild();
+  }
+
+  static void endPlanBuild(Object event, Class<?> type, Object markupKey, int markupElements, Plan plan) {
+    if (event != null) {
+      // markup outside wicket's cache is keyed by its content
+      RECORDER.endPlanBuild(event,
+                            type,
+                            markupKey instanceof MarkupKey ? markupKey.toString() : null,
+                            markupElements,
+                            plan.size());
+    }
+  }
+
+  static Object beginInstantiation() {
+    return RECORDER == null ? null : RECORDER.beginInstantiation();
+  }
+
+  static void endInstantiation(Object event, Class<?> owner, String id, Class<?> type) {
+    if (event != null) {
+      RECORDER.endInstantiation(event, owner, id, type);
+    }
+  }
+
+  static Object beginInitialization() {
+    return RECORDER == null ? null : RECORDER.beginInitialization();
+  }
+
+  static void endInitialization(Object event, Class<?> type, Plan plan) {
+    if (event != null) {
+      RECORDER.endInitialization(event, type, plan.size());
+    }
+  }
+
+  static Object beginEviction() {
+    return RECORDER == null ? null : RECORDER.beginEviction();
+  }
+
+  static void endEviction(Object event, int evicted, int remaining) {
+    if (event != null) {
+      RECORDER.endEviction(event, evicted, remaining);
+    }
+  }
+
+  // FlightEvents is compiled separately, on Java 11 and later only
+  private static Recorder load() {
+    try {
+      return (Recorder) Class.forName(Events.class.getPackage().getName() + ".FlightEvents")
+                             .getDeclaredConstructor()
+                             .newInstance();
+    }
+    catch (ReflectiveOperationException e) {
+      return null;
+    }
+    catch (LinkageError e) {
+      return null;
+    }
+  }
+
+  /**
+   * Records the events, implemented by {@code FlightEvents}.
+   */
+  interface Recorder {
+
+    Object beginPlanBuild();
+
+    void endPlanBuild(Object event, Class<?> type, String markupKey, int markupElements, int components);
+
+    Object beginInstantiation();
+
+    void endInstantiation(Object event, Class<?> owner, String id, Class<?> type);
+
+    Object beginInitialization();
+
+    void endInitialization(Object event, Class<?> type, int components);
+
+    Object beginEviction();
+
+    void endEviction(Object event, int evicted, int remaining);
+  }
+
+}
@@ -0,0 +1,169 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package com.github.wicket.autowire;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+import org.apache.wicket.Component;
+import org.apache.wicket.WicketRuntimeException;
+
+/**
+ * Reads an annotated component field. Accessors are resolved once per class,
+ * so no access checks or accessibility toggling happen while wiring.
+ */
+abstract class FieldAccessor {
+
+  abstract String getName();
+
+  abstract Component get(Component component);
+
+  @Override
+  public String toString() {
+    return getName();
+  }
+
+  static Handle of(Field field) {
+    return Handle.of(field);
+  }
+
+  static FieldAccessor of(AutoWirer<Component> wirer, int index, String name) {
+    return new Generated(wirer, index, name);
+  }
+
+  /**
+   * Reads and writes a field through method handles.
+   */
+  static final class Handle extends FieldAccessor {
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Component.class, Component.class);
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class,
+                                                                        Component.class,
+                                                                        Component.class);
+
+    private final Field field;
+    private final MethodHandle getter;
+    // null for final fields, which are only assignable through reflection
+    private final MethodHandle setter;
+
+    private Handle(Field field, MethodHandle getter, MethodHandle setter) {
+      this.field = field;
+      this.getter = getter;
+      this.setter = setter;
+    }
+
+    static Handle of(Field field) {
+      field.setAccessible(true);
+      MethodHandles.Lookup lookup = MethodHandles.lookup();
+      boolean isStatic = Modifier.isStatic(field.getModifiers());
+      try {
+        MethodHandle getter = lookup.unreflectGetter(field);
+        if (isStatic) {
+          getter = MethodHandles.dropArguments(getter, 0, Component.class);
+        }
+        MethodHandle setter = null;
+        if (!Modifier.isFinal(field.getModifiers())) {
+          setter = lookup.unreflectSetter(field);
+          if (isStatic) {
+            setter = MethodHandles.dropArguments(setter, 0, Component.class);
+          }
+          setter = setter.asType(SETTER_TYPE);
+        }
+        return new Handle(field, getter.asType(GETTER_TYPE), setter);
+      }
+      catch (IllegalAccessException e) {
+        throw new WicketRuntimeException("Unable to access field " + field, e);
+      }
+    }
+
+    Field getField() {
+      return field;
+    }
+
+    @Override
+    String getName() {
+      return field.getName();
+    }
+
+    @Override
+    Component get(Component component) {
+      try {
+        return (Component) getter.invokeExact(component);
+      }
+      catch (RuntimeException e) {
+        throw e;
+      }
+      catch (Error e) {
+        throw e;
+      }
+      catch (Throwable e) {
+        throw new WicketRuntimeException(e);
+      }
+    }
+
+    void set(Component component, Component value) {
+      if (setter == null) {
+        try {
+          field.set(component, value);
+          return;
+        }
+        catch (IllegalAccessException e) {
+          throw new WicketRuntimeException("Unable to assign final field " + field, e);
+        }
+      }
+      try {
+        setter.invokeExact(component, value);
+      }
+      catch (RuntimeException e) {
+        throw e;
+      }
+      catch (Error e) {
+        throw e;
+      }
+      catch (Throwable e) {
+        throw new WicketRuntimeException(e);
+      }
+    }
+  }
+
+  /**
+   * Reads a field through a compile time generated {@link AutoWirer}.
+   */
+  private static final class Generated extends FieldAccessor {
+
+    private final AutoWirer<Component> wirer;
+    private final int index;
+    private final String name;
+
+    Generated(AutoWirer<Component> wirer, int index, String name) {
+      this.wirer = wirer;
+      this.index = index;
+      this.name = name;
+    }
+
+    @Override
+    String getName() {
+      return name;
+    }
+
+    @Override
+    Component get(Component component) {
+      return wirer.getField(component, index);
+    }
+  }
+
+}
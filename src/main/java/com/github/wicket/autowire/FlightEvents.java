@@ -0,0 +1,185 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package com.github.wicket.autowire;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The flight recorder events. Only loaded through {@link Events} if the JVM
+ * has a flight recorder. Compiled on Java 11 and later only, see the
+ * flight-recorder profile.
+ */
+final class FlightEvents implements Events.Recorder {
+
+  private static final String PREFIX = "com.github.wicket.autowire.";
+
+  private static final EventType PLAN_BUILD = EventType.getEventType(PlanBuild.class);
+  private static final EventType INSTANTIATION = EventType.getEventType(Instantiation.class);
+  private static final EventType INITIALIZATION = EventType.getEventType(Initialization.class);
+  private static final EventType EVICTION = EventType.getEventType(Eviction.class);
+
+  FlightEvents() {
+  }
+
+  @Override
+  public Object beginPlanBuild() {
+    if (!PLAN_BUILD.isEnabled()) {
+      return null;
+    }
+    final PlanBuild event = new PlanBuild();
+    event.begin();
+    return event;
+  }
+
+  @Override
+  public void endPlanBuild(Object begun, Class<?> type, String markupKey, int markupElements, int components) {
+    final PlanBuild event = (PlanBuild) begun;
+    event.componentClass = type;
+    event.markupKey = markupKey;
+    event.markupElements = markupElements;
+    event.components = components;
+    event.commit();
+  }
+
+  @Override
+  public Object beginInstantiation() {
+    if (!INSTANTIATION.isEnabled()) {
+      return null;
+    }
+    final Instantiation event = new Instantiation();
+    event.begin();
+    return event;
+  }
+
+  @Override
+  public void endInstantiation(Object begun, Class<?> owner, String id, Class<?> type) {
+    final Instantiation event = (Instantiation) begun;
+    event.ownerClass = owner;
+    event.id = id;
+    event.componentClass = type;
+    event.commit();
+  }
+
+  @Override
+  public Object beginInitialization() {
+    if (!INITIALIZATION.isEnabled()) {
+      return null;
+    }
+    final Initialization event = new Initialization();
+    event.begin();
+    return event;
+  }
+
+  @Override
+  public void endInitialization(Object begun, Class<?> type, int components) {
+    final Initialization event = (Initialization) begun;
+    event.componentClass = type;
+    event.components = components;
+    event.commit();
+  }
+
+  @Override
+  public Object beginEviction() {
+    if (!EVICTION.isEnabled()) {
+      return null;
+    }
+    final Eviction event = new Eviction();
+    event.begin();
+    return event;
+  }
+
+  @Override
+  public void endEviction(Object begun, int evicted, int remaining) {
+    final Eviction event = (Eviction) begun;
+    event.evicted = evicted;
+    event.remaining = remaining;
+    event.commit();
+  }
+
+  @Name(PREFIX + "PlanBuild")
+  @Label("Plan Build")
+  @Description("A wiring plan is built for a component class and markup")
+  @Category({ "Wicket", "Auto-Wire" })
+  @Enabled(false)
+  static class PlanBuild extends Event {
+
+    @Label("Component Class")
+    Class<?> componentClass;
+
+    @Label("Markup Key")
+    String markupKey;
+
+    @Label("Markup Elements")
+    int markupElements;
+
+    @Label("Wired Components")
+    int components;
+  }
+
+  @Name(PREFIX + "Instantiation")
+  @Label("Component Instantiation")
+  @Description("A component is created for an annotated field")
+  @Category({ "Wicket", "Auto-Wire" })
+  @Enabled(false)
+  @StackTrace(false)
+  static class Instantiation extends Event {
+
+    @Label("Owner Class")
+    Class<?> ownerClass;
+
+    @Label("Component Id")
+    String id;
+
+    @Label("Component Class")
+    Class<?> componentClass;
+  }
+
+  @Name(PREFIX + "Initialization")
+  @Label("Component Initialization")
+  @Description("The components of a container are added to it")
+  @Category({ "Wicket", "Auto-Wire" })
+  @Enabled(false)
+  @StackTrace(false)
+  static class Initialization extends Event {
+
+    @Label("Component Class")
+    Class<?> componentClass;
+
+    @Label("Wired Components")
+    int components;
+  }
+
+  @Name(PREFIX + "Eviction")
+  @Label("Plan Eviction")
+  @Description("Idle and least recently used plans are evicted from a plan cache")
+  @Category({ "Wicket", "Auto-Wire" })
+  @Enabled(false)
+  @StackTrace(false)
+  static class Eviction extends Event {
+
+    @Label("Evicted Plans")
+    int evicted;
+
+    @Label("Remaining Plans")
+    int remaining;
+  }
+
+}
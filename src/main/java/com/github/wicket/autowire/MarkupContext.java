@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package com.github.wicket.autowire;
+
+import java.util.Locale;
+
+import org.apache.wicket.Component;
+import org.apache.wicket.Page;
+
+/**
+ * Where a component looks for its markup: the page and parent it is placed
+ * in, its id and the locale, style and variation. Components of one class in
+ * equal contexts find the same markup, or none.
+ */
+final class MarkupContext {
+
+  private final Class<?> pageClass;
+  private final Class<?> parentClass;
+  private final String id;
+  private final Locale locale;
+  private final String style;
+  private final String variation;
+  private final int hash;
+
+  private MarkupContext(Component component) {
+    final Page page = component.findParent(Page.class);
+    this.pageClass = page == null ? null : page.getClass();
+    this.parentClass = component.getParent() == null ? null : component.getParent().getClass();
+    this.id = component.getId();
+    this.locale = component.getLocale();
+    this.style = component.getStyle();
+    this.variation = component.getVariation();
+    this.hash = hash(pageClass, parentClass, id, locale, style, variation);
+  }
+
+  static MarkupContext of(Component component) {
+    return new MarkupContext(component);
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof MarkupContext)) {
+      return false;
+    }
+    final MarkupContext other = (MarkupContext) obj;
+    return pageClass == other.pageClass && parentClass == other.parentClass && id.equals(other.id)
+           && equal(locale, other.locale) && equal(style, other.style) && equal(variation, other.variation);
+  }
+
+  @Override
+  public int hashCode() {
+    return hash;
+  }
+
+  @Override
+  public String toString() {
+    return "MarkupContext{" + "page=" + pageClass + ", parent=" + parentClass + ", id='" + id + '\''
+           + ", locale=" + locale + ", style='" + style + '\'' + ", variation='" + variation + '\'' + '}';
+  }
+
+  private static boolean equal(Object o1, Object o2) {
+    return o1 == null ? o2 == null : o1.equals(o2);
+  }
+
+  private static int hash(Object... values) {
+    int hash = 1;
+    for (Object value : values) {
+      hash = 31 * hash + (value == null ? 0 : value.hashCode());
+    }
+    return hash;
+  }
+
+}
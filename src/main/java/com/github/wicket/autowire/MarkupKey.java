@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package com.github.wicket.autowire;
+
+import org.apache.wicket.Component;
+import org.apache.wicket.markup.IMarkupFragment;
+import org.apache.wicket.markup.MarkupElement;
+import org.apache.wicket.markup.MarkupResourceStream;
+
+/**
+ * Identifies a markup fragment without serializing it. Markup that is held by
+ * wicket's markup cache is immutable and shared, so a fragment is identified
+ * by its resource stream, its first element and its size. Reloaded markup
+ * gets new instances and therefore new keys. The hash is not stored, it is
+ * derived from identity hash codes that the JVM keeps in the object headers.
+ */
+final class MarkupKey {
+
+  private final MarkupResourceStream stream;
+  private final MarkupElement first;
+  private final int size;
+
+  private MarkupKey(MarkupResourceStream stream, MarkupElement first, int size) {
+    this.stream = stream;
+    this.first = first;
+    this.size = size;
+  }
+
+  private static int hash(MarkupResourceStream stream, MarkupElement first, int size) {
+    return 31 * (31 * System.identityHashCode(stream) + System.identityHashCode(first)) + size;
+  }
+
+  /**
+   * @return the hash of the key the markup would get, or {@code 0} if it is
+   *         keyed by content. Nothing is allocated.
+   */
+  static int hash(IMarkupFragment markup) {
+    final MarkupResourceStream stream = markup.getMarkupResourceStream();
+    if (!isIdentifiable(stream, markup)) {
+      return 0;
+    }
+    return hash(stream, markup.get(0), markup.size());
+  }
+
+  private static boolean isIdentifiable(MarkupResourceStream stream, IMarkupFragment markup) {
+    return stream != null && stream.getCacheKey() != null && markup.size() > 0;
+  }
+
+  /**
+   * @return a key for the given markup. Markup that is not cached by wicket
+   *         (no cache key) is created for each request, so it is keyed by the
+   *         key of its {@link MarkupSkeleton}, which is all a plan is built
+   *         from.
+   */
+  static Object of(Component component, IMarkupFragment markup) {
+    final MarkupResourceStream stream = markup.getMarkupResourceStream();
+    if (!isIdentifiable(stream, markup)) {
+      return MarkupSkeleton.of(component, markup).getKey();
+    }
+    return new MarkupKey(stream, markup.get(0), markup.size());
+  }
+
+  MarkupResourceStream getStream() {
+    return stream;
+  }
+
+  /**
+   * @return {@code true} if {@link #of(Component, IMarkupFragment)} would return a
+   *         key equal to this one. Nothing is allocated.
+   */
+  boolean matches(IMarkupFragment markup) {
+    return stream == markup.getMarkupResourceStream() && size == markup.size() && first == markup.get(0);
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof MarkupKey)) {
+      return false;
+    }
+    final MarkupKey other = (MarkupKey) obj;
+    return stream == other.stream && first == other.first && size == other.size;
+  }
+
+  @Override
+  public int hashCode() {
+    return hash(stream, first, size);
+  }
+
+  @Override
+  public String toString() {
+    return "MarkupKey{" + stream.getCacheKey() + ", size=" + size + '}';
+  }
+
+}
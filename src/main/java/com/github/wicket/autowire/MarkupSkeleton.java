@@ -0,0 +1,174 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package com.github.wicket.autowire;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.wicket.Component;
+import org.apache.wicket.markup.ComponentTag;
+import org.apache.wicket.markup.IMarkupFragment;
+import org.apache.wicket.markup.MarkupElement;
+import org.apache.wicket.markup.MarkupStream;
+import org.apache.wicket.markup.WicketTag;
+import org.apache.wicket.markup.html.list.ListItem;
+import org.apache.wicket.markup.resolver.WicketContainerResolver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The part of a markup fragment that is relevant for wiring: component tag
+ * ids, their nesting and border/body placement. Text, attributes and non
+ * component tags are dropped, so markup variants that differ only in those
+ * have equal skeletons.
+ */
+final class MarkupSkeleton {
+
+  private static final Logger log = LoggerFactory.getLogger(MarkupSkeleton.class);
+
+  /** component tag with a body, following tags are its children */
+  static final byte OPEN = 0;
+  /** component tag without a body */
+  static final byte OPEN_CLOSE = 1;
+  /** close tag of a component tag with a body */
+  static final byte CLOSE = 2;
+  /** following tags are added to the border */
+  static final byte BORDER = 3;
+  /** following tags are added to the border body */
+  static final byte BODY = 4;
+
+  private final byte[] types;
+  private final String[] ids;
+  private final String key;
+
+  private MarkupSkeleton(byte[] types, String[] ids, String key) {
+    this.types = types;
+    this.ids = ids;
+    this.key = key;
+  }
+
+  int size() {
+    return types.length;
+  }
+
+  byte getType(int index) {
+    return types[index];
+  }
+
+  String getId(int index) {
+    return ids[index];
+  }
+
+  /**
+   * @return a string that is equal for equal skeletons.
+   */
+  String getKey() {
+    return key;
+  }
+
+  static MarkupSkeleton of(Component component, IMarkupFragment markup) {
+    final MarkupStream stream = new MarkupStream(markup);
+    final List<Byte> types = new ArrayList<Byte>();
+    final List<String> ids = new ArrayList<String>();
+    final StringBuilder key = new StringBuilder();
+
+    // no associated markup: component tag is part of the markup
+    MarkupElement containerTag = null;
+    //TODO current criteria is fragile! find better way to check if component tag of component is part its markup.
+    if (skipFirstComponentTag(component, stream)) {
+      if (log.isTraceEnabled()) {
+        log.trace("Skipped component tag " + stream.get());
+      }
+      containerTag = stream.get();
+      stream.next();
+    }
+
+    while (stream.skipUntil(ComponentTag.class)) {
+      final ComponentTag tag = stream.getTag();
+
+      if (log.isTraceEnabled()) {
+        log.trace("Processing tag " + tag);
+      }
+
+      // track border tags
+      if (tag instanceof WicketTag) {
+        final WicketTag wicketTag = (WicketTag) tag;
+        if (wicketTag.isBorderTag() && tag.isOpen() || wicketTag.isBodyTag() && tag.isClose()) {
+          types.add(BORDER);
+          ids.add(null);
+          key.append('[');
+        }
+        else if (wicketTag.isBodyTag() && tag.isOpen() || wicketTag.isBorderTag() && tag.isClose()) {
+          types.add(BODY);
+          ids.add(null);
+          key.append(']');
+        }
+      }
+
+      if (isComponentTag(tag)) {
+        if (tag.isOpen() || tag.isOpenClose()) {
+          // wicket ids never contain ':', so it terminates the id
+          if (tag.isOpen() && !tag.hasNoCloseTag()) {
+            types.add(OPEN);
+            key.append('(');
+          }
+          else {
+            types.add(OPEN_CLOSE);
+            key.append('.');
+          }
+          ids.add(tag.getId());
+          key.append(tag.getId()).append(':');
+        }
+        else if (tag.isClose() && !tag.getOpenTag().isAutoComponentTag()) {
+          // the container tag is part of the inherited markup. do not pop stack on container tag close.
+          if (containerTag == null || !tag.closes(containerTag)) {
+            types.add(CLOSE);
+            ids.add(null);
+            key.append(')');
+          }
+        }
+      }
+      stream.next();
+    }
+
+    final byte[] typeArray = new byte[types.size()];
+    for (int i = 0; i < typeArray.length; i++) {
+      typeArray[i] = types.get(i);
+    }
+    return new MarkupSkeleton(typeArray, ids.toArray(new String[ids.size()]), key.toString());
+  }
+
+  private static boolean skipFirstComponentTag(Component component, MarkupStream stream) {
+    if (stream.get() instanceof ComponentTag && ((ComponentTag) stream.get()).getId().equals(component.getId())) {
+      return true;
+    }
+    else if (component instanceof ListItem) {
+      return true;
+    }
+    else {
+      return false;
+    }
+  }
+
+  private static boolean isComponentTag(ComponentTag tag) {
+    return !(tag instanceof WicketTag) && !tag.isAutoComponentTag()
+           || tag.getName().equals(WicketContainerResolver.CONTAINER);
+  }
+
+  @Override
+  public String toString() {
+    return key;
+  }
+
+}
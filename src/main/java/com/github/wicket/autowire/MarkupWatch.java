@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package com.github.wicket.autowire;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.wicket.Application;
+import org.apache.wicket.markup.MarkupResourceStream;
+import org.apache.wicket.settings.IResourceSettings;
+import org.apache.wicket.util.listener.IChangeListener;
+import org.apache.wicket.util.watch.IModificationWatcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reports markup that wicket reloads, so the plans built for it can be
+ * dropped. Markup resources and the base markup they extend are watched with
+ * the resource watcher of the application, the one that wicket's markup cache
+ * uses. It only exists if resources are polled for modifications, usually in
+ * development mode.
+ */
+final class MarkupWatch {
+
+  private static final Logger log = LoggerFactory.getLogger(MarkupWatch.class);
+
+  private final Application application;
+  private final Listener listener;
+  // watched resources and the markup that depends on them
+  private final ConcurrentMap<MarkupResourceStream, Set<MarkupResourceStream>> dependents = new ConcurrentHashMap<MarkupResourceStream, Set<MarkupResourceStream>>();
+
+  private MarkupWatch(Application application, Listener listener) {
+    this.application = application;
+    this.listener = listener;
+  }
+
+  /**
+   * @return the watch, or {@code null} if the application does not poll
+   *         resources for modifications and has no resource watcher.
+   */
+  static MarkupWatch of(Application application, Listener listener) {
+    final IResourceSettings settings = application.getResourceSettings();
+    if (settings.getResourcePollFrequency() == null && settings.getResourceWatcher(false) == null) {
+      return null;
+    }
+    return new MarkupWatch(application, listener);
+  }
+
+  /**
+   * Reports the markup once it or one of its base markups is modified.
+   */
+  void watch(MarkupResourceStream markup) {
+    final IModificationWatcher watcher = application.getResourceSettings().getResourceWatcher(true);
+    if (watcher == null) {
+      return;
+    }
+    for (MarkupResourceStream resource = markup; resource != null; resource = resource.getBaseMarkupResourceStream()) {
+      Set<MarkupResourceStream> markups = dependents.get(resource);
+      if (markups == null) {
+        markups = Collections.newSetFromMap(new ConcurrentHashMap<MarkupResourceStream, Boolean>());
+        final Set<MarkupResourceStream> existing = dependents.putIfAbsent(resource, markups);
+        if (existing != null) {
+          markups = existing;
+        }
+        else {
+          watcher.add(resource, new ChangeListener(resource));
+        }
+      }
+      markups.add(markup);
+    }
+  }
+
+  // number of watched resources
+  int size() {
+    return dependents.size();
+  }
+
+  interface Listener {
+
+    void onChange(MarkupResourceStream markup);
+  }
+
+  private class ChangeListener implements IChangeListener {
+
+    private final MarkupResourceStream resource;
+
+    ChangeListener(MarkupResourceStream resource) {
+      this.resource = resource;
+    }
+
+    @Override
+    public void onChange() {
+      // wicket stops watching the resource and reloads it with a new stream
+      final Set<MarkupResourceStream> markups = dependents.remove(resource);
+      if (markups == null) {
+        return;
+      }
+      if (log.isDebugEnabled()) {
+        log.debug("Markup modified: " + resource + ", invalidating plans of " + markups.size() + " markups");
+      }
+      for (MarkupResourceStream markup : markups) {
+        for (Set<MarkupResourceStream> others : dependents.values()) {
+          others.remove(markup);
+        }
+        listener.onChange(markup);
+      }
+    }
+  }
+
+}
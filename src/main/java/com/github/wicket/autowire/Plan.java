@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package com.github.wicket.autowire;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.wicket.Component;
+import org.apache.wicket.MarkupContainer;
+import org.apache.wicket.markup.html.border.Border;
+
+/**
+ * Immutable wiring plan of a component for one markup. Children are stored in
+ * pre-order in parallel arrays, so a parent is always wired before its
+ * children and the plan is applied in a single loop. Equal plans of a class
+ * wire the same fields the same way, so they can be shared between markups.
+ */
+final class Plan {
+
+  // index of the parent entry, -1 for the wired component itself
+  private final int[] parents;
+  private final FieldAccessor[] accessors;
+  // null if nothing is added to a border
+  private final boolean[] border;
+  // creates the component if instantiation is deferred, null if nothing is
+  private final AutoWire.Action[] creators;
+
+  private Plan(int[] parents, FieldAccessor[] accessors, boolean[] border, AutoWire.Action[] creators) {
+    this.parents = parents;
+    this.accessors = accessors;
+    this.border = border;
+    this.creators = creators;
+  }
+
+  int size() {
+    return accessors.length;
+  }
+
+  // shallow size with compressed references: object and its arrays
+  long getEstimatedBytes() {
+    long bytes = 24 + 2 * 16 + 8L * accessors.length;
+    if (border != null) {
+      bytes += 16 + border.length;
+    }
+    if (creators != null) {
+      bytes += 16 + 4L * creators.length;
+    }
+    return bytes;
+  }
+
+  void initialize(Component component) {
+    for (int i = 0; i < accessors.length; i++) {
+      if (creators != null && creators[i] != null && accessors[i].get(component) == null) {
+        creators[i].perform(component);
+      }
+      final Component value = accessors[i].get(component);
+      final int parentIndex = parents[i];
+      final Component parent = parentIndex < 0 ? component : accessors[parentIndex].get(component);
+      if (border != null && border[i]) {
+        ((Border) parent).addToBorder(value);
+      }
+      else {
+        ((MarkupContainer) parent).add(value);
+      }
+    }
+  }
+
+  // accessors and creators are compared by identity, they are per class
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof Plan)) {
+      return false;
+    }
+    final Plan other = (Plan) obj;
+    return Arrays.equals(parents, other.parents) && Arrays.equals(accessors, other.accessors)
+           && Arrays.equals(border, other.border) && Arrays.equals(creators, other.creators);
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * Arrays.hashCode(parents) + Arrays.hashCode(accessors);
+  }
+
+  @Override
+  public String toString() {
+    return "Plan{" + "parents=" + Arrays.toString(parents) + ", fields=" + Arrays.toString(accessors)
+           + ", border=" + Arrays.toString(border) + '}';
+  }
+
+  static final class Builder {
+
+    private final List<Integer> parents = new ArrayList<Integer>();
+    private final List<FieldAccessor> accessors = new ArrayList<FieldAccessor>();
+    private final List<Boolean> border = new ArrayList<Boolean>();
+    private final List<AutoWire.Action> creators = new ArrayList<AutoWire.Action>();
+
+    /**
+     * @return index of the added entry
+     */
+    int add(int parent, FieldAccessor accessor, boolean addToBorder, AutoWire.Action creator) {
+      parents.add(parent);
+      accessors.add(accessor);
+      border.add(addToBorder);
+      creators.add(creator);
+      return accessors.size() - 1;
+    }
+
+    int getParent(int index) {
+      return parents.get(index);
+    }
+
+    Plan build() {
+      final int size = accessors.size();
+      final int[] parentArray = new int[size];
+      boolean[] borderArray = null;
+      AutoWire.Action[] creatorArray = null;
+      for (int i = 0; i < size; i++) {
+        parentArray[i] = parents.get(i);
+        if (border.get(i)) {
+          if (borderArray == null) {
+            borderArray = new boolean[size];
+          }
+          borderArray[i] = true;
+        }
+        if (creators.get(i) != null) {
+          if (creatorArray == null) {
+            creatorArray = new AutoWire.Action[size];
+          }
+          creatorArray[i] = creators.get(i);
+        }
+      }
+      return new Plan(parentArray, accessors.toArray(new FieldAccessor[size]), borderArray, creatorArray);
+    }
+  }
+
+}
@@ -0,0 +1,250 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package com.github.wicket.autowire;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Size bounded cache of wiring plans with approximate LRU eviction. A hit only
+ * records the current second, and only if it changed. Once the cache grows
+ * beyond its size, a sweep on the {@link Background} thread removes idle
+ * entries and then the least recently used ones.
+ */
+final class PlanCache<K, V> {
+
+  private static final Logger log = LoggerFactory.getLogger(PlanCache.class);
+
+  private final ConcurrentMap<K, Entry<V>> map = new ConcurrentHashMap<K, Entry<V>>();
+  private final SingleFlight<K, Entry<V>> loading = new SingleFlight<K, Entry<V>>();
+  private final AtomicBoolean sweepScheduled = new AtomicBoolean();
+  private final int maxSize;
+  private final int idleSeconds;
+  // null if nothing is to be done after entries were evicted
+  private final Runnable afterEviction;
+
+  private final Runnable sweeper = new Runnable() {
+
+    @Override
+    public void run() {
+      sweep();
+    }
+  };
+
+  PlanCache(int maxSize, int idleSeconds) {
+    this(maxSize, idleSeconds, null);
+  }
+
+  /**
+   * @param afterEviction
+   *          runs on the {@link Background} thread after a sweep removed
+   *          entries, or {@code null}
+   */
+  PlanCache(int maxSize, int idleSeconds, Runnable afterEviction) {
+    this.maxSize = maxSize;
+    this.idleSeconds = idleSeconds;
+    this.afterEviction = afterEviction;
+  }
+
+  V get(K key) {
+    final Entry<V> entry = getEntry(key);
+    return entry == null ? null : entry.value;
+  }
+
+  /**
+   * @return the touched entry of the key, or {@code null}. Callers may keep
+   *         it and {@link Entry#get()} its value later, which touches it again.
+   */
+  Entry<V> getEntry(K key) {
+    final Entry<V> entry = map.get(key);
+    if (entry != null) {
+      entry.touch();
+    }
+    return entry;
+  }
+
+  /**
+   * Returns the cached value or loads it. Concurrent loads of the same key are
+   * coordinated by {@link SingleFlight}.
+   */
+  V get(K key, final Callable<V> loader) {
+    final V value = get(key);
+    if (value != null) {
+      return value;
+    }
+    final Entry<V> entry = loading.get(map, key, new Callable<Entry<V>>() {
+
+      @Override
+      public Entry<V> call() throws Exception {
+        return new Entry<V>(loader.call());
+      }
+    });
+    afterInsert();
+    return entry.value;
+  }
+
+  /**
+   * @return the value already cached for the key, or {@code null} if the given
+   *         value was added.
+   */
+  V putIfAbsent(K key, V value) {
+    final Entry<V> existing = map.putIfAbsent(key, new Entry<V>(value));
+    if (existing != null) {
+      existing.touch();
+      return existing.value;
+    }
+    afterInsert();
+    return null;
+  }
+
+  /**
+   * Replaces the value only if the key is still mapped to the expected one.
+   */
+  boolean replace(K key, V expected, V value) {
+    final Entry<V> entry = map.get(key);
+    if (entry != null && entry.value == expected && map.replace(key, entry, new Entry<V>(value))) {
+      entry.removed = true;
+      return true;
+    }
+    return false;
+  }
+
+  void clear() {
+    for (Entry<V> entry : map.values()) {
+      entry.removed = true;
+    }
+    map.clear();
+  }
+
+  void remove(K key) {
+    final Entry<V> entry = map.remove(key);
+    if (entry != null) {
+      entry.removed = true;
+    }
+  }
+
+  Collection<K> keys() {
+    return new ArrayList<K>(map.keySet());
+  }
+
+  int size() {
+    return map.size();
+  }
+
+  Collection<V> values() {
+    final List<V> values = new ArrayList<V>(map.size());
+    for (Entry<V> entry : map.values()) {
+      values.add(entry.value);
+    }
+    return values;
+  }
+
+  private void afterInsert() {
+    if (map.size() > maxSize && sweepScheduled.compareAndSet(false, true)) {
+      Background.execute(sweeper);
+    }
+  }
+
+  void sweep() {
+    sweepScheduled.set(false);
+    final Object event = Events.beginEviction();
+    final int now = Entry.now();
+    int evicted = 0;
+
+    // avoid memory leaks if markup changes often.
+    for (Iterator<Entry<V>> iterator = map.values().iterator(); iterator.hasNext();) {
+      final Entry<V> entry = iterator.next();
+      if (now - entry.lastAccess > idleSeconds) {
+        iterator.remove();
+        entry.removed = true;
+        evicted++;
+      }
+    }
+
+    // evict the least recently used quarter
+    if (map.size() > maxSize) {
+      final List<Map.Entry<K, Entry<V>>> entries = new ArrayList<Map.Entry<K, Entry<V>>>(map.entrySet());
+      Collections.sort(entries, new Comparator<Map.Entry<K, Entry<V>>>() {
+
+        @Override
+        public int compare(Map.Entry<K, Entry<V>> o1, Map.Entry<K, Entry<V>> o2) {
+          return o1.getValue().lastAccess < o2.getValue().lastAccess ? -1
+              : o1.getValue().lastAccess == o2.getValue().lastAccess ? 0 : 1;
+        }
+      });
+      final int target = maxSize - maxSize / 4;
+      for (int i = 0; i < entries.size() - target; i++) {
+        if (map.remove(entries.get(i).getKey(), entries.get(i).getValue())) {
+          entries.get(i).getValue().removed = true;
+          evicted++;
+        }
+      }
+    }
+
+    if (log.isDebugEnabled()) {
+      log.debug("Evicted " + evicted + " plans, " + map.size() + " left");
+    }
+    Events.endEviction(event, evicted, map.size());
+    if (evicted > 0 && afterEviction != null) {
+      afterEviction.run();
+    }
+  }
+
+  static final class Entry<V> {
+
+    private final V value;
+    // not volatile: a lost update only makes eviction slightly less accurate
+    private int lastAccess = now();
+    // not volatile: a stale read only uses a removed value once more
+    private boolean removed;
+
+    Entry(V value) {
+      this.value = value;
+    }
+
+    V get() {
+      touch();
+      return value;
+    }
+
+    // no longer in the cache, evicted, replaced or removed
+    boolean isRemoved() {
+      return removed;
+    }
+
+    void touch() {
+      final int now = now();
+      if (lastAccess != now) {
+        lastAccess = now;
+      }
+    }
+
+    static int now() {
+      return (int) (System.currentTimeMillis() / 1000);
+    }
+  }
+
+}
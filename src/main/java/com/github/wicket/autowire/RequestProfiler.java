@@ -0,0 +1,204 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package com.github.wicket.autowire;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.wicket.Component;
+import org.apache.wicket.MetaDataKey;
+import org.apache.wicket.request.cycle.AbstractRequestCycleListener;
+import org.apache.wicket.request.cycle.RequestCycle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sums up the time auto-wiring takes per request and logs it for requests
+ * slower than a threshold, with the component classes that took longest.
+ * Times are exclusive: wiring a component does not count the time of the
+ * components it creates or adds.
+ *
+ * @see AutoWireSettings#setSlowRequestMillis(long)
+ */
+final class RequestProfiler extends AbstractRequestCycleListener implements AutoWireListener {
+
+  private static final Logger log = LoggerFactory.getLogger(RequestProfiler.class);
+
+  private static final MetaDataKey<Profile> PROFILE = new MetaDataKey<Profile>() {
+
+    private static final long serialVersionUID = 1L;
+  };
+
+  // component classes listed per request
+  private static final int TOP_CLASSES = 5;
+
+  private final long thresholdNanos;
+
+  RequestProfiler(long thresholdMillis) {
+    this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+  }
+
+  @Override
+  public void onBeginRequest(RequestCycle cycle) {
+    cycle.setMetaData(PROFILE, new Profile(System.nanoTime()));
+  }
+
+  @Override
+  public void onEndRequest(RequestCycle cycle) {
+    final Profile profile = cycle.getMetaData(PROFILE);
+    if (profile == null || profile.isEmpty()) {
+      return;
+    }
+    final long nanos = System.nanoTime() - profile.begin;
+    if (nanos >= thresholdNanos) {
+      log.info("Request " + cycle.getRequest().getUrl() + " took " + millis(nanos) + ", " + profile);
+    }
+  }
+
+  @Override
+  public void onClassCache(Class<? extends Component> type, boolean hit) {
+  }
+
+  @Override
+  public void onMarkupCache(Class<? extends Component> type, boolean hit) {
+  }
+
+  @Override
+  public void onPlanBuilt(Class<? extends Component> type, long nanos) {
+    final Profile profile = getProfile();
+    if (profile != null) {
+      profile.planBuilds++;
+      profile.planBuildNanos += profile.add(type, nanos);
+    }
+  }
+
+  @Override
+  public void onInstantiated(Class<? extends Component> type, long nanos) {
+    final Profile profile = getProfile();
+    if (profile != null) {
+      profile.instantiations++;
+      profile.instantiationNanos += profile.add(type, nanos);
+    }
+  }
+
+  @Override
+  public void onInitialized(Class<? extends Component> type, long nanos) {
+    final Profile profile = getProfile();
+    if (profile != null) {
+      profile.initializations++;
+      profile.initializationNanos += profile.add(type, nanos);
+    }
+  }
+
+  // null outside of requests
+  private static Profile getProfile() {
+    final RequestCycle cycle = RequestCycle.get();
+    return cycle == null ? null : cycle.getMetaData(PROFILE);
+  }
+
+  private static String millis(long nanos) {
+    return String.format(Locale.ROOT, "%.1fms", nanos / 1e6);
+  }
+
+  /**
+   * Auto-wiring of one request. Only used by the request thread.
+   */
+  private static final class Profile {
+
+    private final long begin;
+    private int instantiations;
+    private long instantiationNanos;
+    private int initializations;
+    private long initializationNanos;
+    private int planBuilds;
+    private long planBuildNanos;
+    private final Map<Class<? extends Component>, long[]> classNanos = new HashMap<Class<? extends Component>, long[]>();
+    // reported intervals a later report may enclose, by start time
+    private long[] starts = new long[16];
+    private long[] durations = new long[16];
+    private int intervals;
+
+    Profile(long begin) {
+      this.begin = begin;
+    }
+
+    // nothing was auto-wired
+    boolean isEmpty() {
+      return instantiations == 0 && initializations == 0 && planBuilds == 0;
+    }
+
+    /**
+     * Adds a report that ends now. Reports of nested components come first,
+     * so the interval encloses all intervals that start within it.
+     *
+     * @return the exclusive time of the report
+     */
+    long add(Class<? extends Component> type, long nanos) {
+      final long start = System.nanoTime() - nanos;
+      long nested = 0;
+      while (intervals > 0 && starts[intervals - 1] >= start) {
+        intervals--;
+        nested += durations[intervals];
+      }
+      if (intervals == starts.length) {
+        starts = Arrays.copyOf(starts, intervals * 2);
+        durations = Arrays.copyOf(durations, intervals * 2);
+      }
+      starts[intervals] = start;
+      durations[intervals] = nanos;
+      intervals++;
+
+      final long exclusive = Math.max(0, nanos - nested);
+      long[] total = classNanos.get(type);
+      if (total == null) {
+        total = new long[1];
+        classNanos.put(type, total);
+      }
+      total[0] += exclusive;
+      return exclusive;
+    }
+
+    @Override
+    public String toString() {
+      final List<Map.Entry<Class<? extends Component>, long[]>> entries = new ArrayList<Map.Entry<Class<? extends Component>, long[]>>(classNanos.entrySet());
+      Collections.sort(entries, new Comparator<Map.Entry<Class<? extends Component>, long[]>>() {
+
+        @Override
+        public int compare(Map.Entry<Class<? extends Component>, long[]> o1,
+                           Map.Entry<Class<? extends Component>, long[]> o2) {
+          return o1.getValue()[0] > o2.getValue()[0] ? -1 : o1.getValue()[0] == o2.getValue()[0] ? 0 : 1;
+        }
+      });
+      final StringBuilder summary = new StringBuilder("auto-wiring ").append(millis(instantiationNanos
+                                                                                     + initializationNanos
+                                                                                     + planBuildNanos));
+      summary.append(": instantiation ").append(millis(instantiationNanos)).append(" (").append(instantiations);
+      summary.append("), initialization ").append(millis(initializationNanos)).append(" (").append(initializations);
+      summary.append("), plan builds ").append(millis(planBuildNanos)).append(" (").append(planBuilds).append(')');
+      for (int i = 0; i < entries.size() && i < TOP_CLASSES; i++) {
+        summary.append(i == 0 ? ", slowest: " : ", ").append(entries.get(i).getKey().getName()).append(' ');
+        summary.append(millis(entries.get(i).getValue()[0]));
+      }
+      return summary.toString();
+    }
+  }
+
+}
@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package com.github.wicket.autowire;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import org.apache.wicket.WicketRuntimeException;
+
+/**
+ * Fills a cache without a global lock. Concurrent misses for the same key wait
+ * for one shared computation, misses for other keys proceed in parallel.
+ * Failed computations are not cached, the next miss retries.
+ */
+final class SingleFlight<K, V> {
+
+  private final ConcurrentMap<K, FutureTask<V>> inFlight = new ConcurrentHashMap<K, FutureTask<V>>();
+
+  V get(final Map<K, V> cache, final K key, final Callable<V> loader) {
+    V value = cache.get(key);
+    if (value != null) {
+      return value;
+    }
+
+    // cached before waiting threads are released, they may look it up again
+    FutureTask<V> task = new FutureTask<V>(new Callable<V>() {
+
+      @Override
+      public V call() throws Exception {
+        final V value = loader.call();
+        cache.put(key, value);
+        return value;
+      }
+    });
+    FutureTask<V> existing = inFlight.putIfAbsent(key, task);
+    if (existing != null) {
+      return await(existing);
+    }
+    try {
+      // another thread may have completed the same key in the meantime
+      value = cache.get(key);
+      if (value != null) {
+        return value;
+      }
+      task.run();
+      return await(task);
+    }
+    finally {
+      inFlight.remove(key, task);
+    }
+  }
+
+  private V await(FutureTask<V> task) {
+    try {
+      return task.get();
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new WicketRuntimeException(e);
+    }
+    catch (ExecutionException e) {
+      final Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new WicketRuntimeException(cause);
+    }
+  }
+
+}
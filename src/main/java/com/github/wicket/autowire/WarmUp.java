@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package com.github.wicket.autowire;
+
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import org.apache.wicket.Component;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Inspects the component classes configured in {@link AutoWireSettings} in
+ * parallel, so their first instantiation finds them cached.
+ */
+final class WarmUp {
+
+  private static final Logger log = LoggerFactory.getLogger(WarmUp.class);
+
+  private WarmUp() {
+  }
+
+  static void run(final AutoWire autoWire, AutoWireSettings settings, ClassLoader loader) {
+    final long begin = System.currentTimeMillis();
+
+    final Set<Class<? extends Component>> types = new LinkedHashSet<Class<? extends Component>>(settings.getWarmUpClasses());
+    for (String packageName : settings.getWarmUpPackages()) {
+      for (Class<?> clazz : ClassScanner.scan(loader, packageName)) {
+        if (Component.class.isAssignableFrom(clazz) && !Modifier.isAbstract(clazz.getModifiers())) {
+          types.add(clazz.asSubclass(Component.class));
+        }
+      }
+    }
+
+    final List<Class<? extends Component>> typeList = new ArrayList<Class<? extends Component>>(types);
+    final List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(typeList.size());
+    for (final Class<? extends Component> type : typeList) {
+      tasks.add(new Callable<Void>() {
+
+        @Override
+        public Void call() {
+          autoWire.prepare(type);
+          return null;
+        }
+      });
+    }
+
+    final ForkJoinPool pool = new ForkJoinPool(settings.getWarmUpParallelism());
+    try {
+      final List<Future<Void>> results = pool.invokeAll(tasks);
+      for (int i = 0; i < results.size(); i++) {
+        try {
+          results.get(i).get();
+        }
+        catch (ExecutionException e) {
+          // the class is inspected again on its first instantiation
+          log.warn("Unable to prepare " + typeList.get(i), e.getCause());
+        }
+        catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+      }
+    }
+    finally {
+      pool.shutdown();
+    }
+
+    log.info("Prepared " + types.size() + " component classes in " + (System.currentTimeMillis() - begin) + "ms");
+  }
+
+}
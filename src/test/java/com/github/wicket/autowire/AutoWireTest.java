@@ -13,16 +13,52 @@
  */
 package com.github.wicket.autowire;
 
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.sun.management.ThreadMXBean;
+
+import org.apache.log4j.AppenderSkeleton;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.spi.LoggingEvent;
+
+import org.apache.wicket.Component;
+import org.apache.wicket.RuntimeConfigurationType;
+import org.apache.wicket.Session;
+import org.apache.wicket.WicketRuntimeException;
 import org.apache.wicket.application.IComponentInitializationListener;
+import org.apache.wicket.markup.html.WebPage;
+import org.apache.wicket.markup.html.basic.Label;
+import org.apache.wicket.mock.MockApplication;
+import org.apache.wicket.model.Model;
 import org.apache.wicket.util.tester.WicketTester;
+import org.apache.wicket.util.time.Duration;
+import org.apache.wicket.util.watch.ModificationWatcher;
 import org.junit.Before;
 import org.junit.Test;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class AutoWireTest {
 
+  private static final int RECENT_PANELS = 100;
+  private static final int ALLOCATION_PANELS = 1000;
+  // bytes per panel auto-wiring may allocate beyond adding the children manually
+  private static final int ALLOCATION_SLACK = 64;
+  private static final int FOOTPRINT_VARIANTS = 1000;
+
   private AutoWireTester tester;
 
   @Before
@@ -127,6 +163,101 @@ public class AutoWireTest {
     assertTrue(getAutoWire().hasAutoComponentAnnotatedFields(CustomIdPanel.class));
   }
 
+  /**
+   * Assert that a field shadowing a super class field with the same custom id
+   * is wired, and the shadowed field gets the same component.
+   */
+  @Test
+  public void testShadowedCustomId() {
+    ShadowIdPanel panel = this.tester.startComponentInPage(ShadowIdPanel.class);
+    this.tester.assertComponent("testObject:customId", Label.class);
+    assertTrue(panel.label == panel.getSuperLabel());
+    assertTrue(panel.label.getParent() == panel);
+  }
+
+  /**
+   * Assert that final fields are injected.
+   */
+  @Test
+  public void testFinalField() {
+    FinalFieldPanel panel = this.tester.startComponentInPage(FinalFieldPanel.class);
+    this.tester.assertComponent("testObject:label", Label.class);
+    assertTrue(panel.label.getParent() == panel);
+  }
+
+  /**
+   * Assert that a field assigned in a subclass is wired instead of the
+   * injected super class field with the same id.
+   */
+  @Test
+  public void testAssignedCustomId() {
+    AssignedIdPanel panel = this.tester.startComponentInPage(AssignedIdPanel.class);
+    this.tester.assertLabel("testObject:customId", "assigned");
+    assertTrue(panel.assigned.getParent() == panel);
+    assertNull(panel.label.getParent());
+  }
+
+  /**
+   * Assert that a field assigned with a component of another id than its own
+   * is wired by the id of its component.
+   */
+  @Test
+  public void testAssignedOtherId() {
+    RenamedIdPanel panel = this.tester.startComponentInPage(RenamedIdPanel.class);
+    this.tester.assertLabel("testObject:other", "renamed");
+    assertTrue(panel.test1.getParent() == panel);
+  }
+
+  /**
+   * Assert that registered factories create components by field type and by
+   * name, and that a missing named factory or a factory returning null fails
+   * on creation.
+   */
+  @Test
+  public void testComponentFactory() {
+    this.tester = new AutoWireTester(new AutoWireSettings().addFactory("greeting", new ComponentFactory<Label>() {
+
+      @Override
+      public Label create(Component owner, String id) {
+        return new Label(id, "Hello");
+      }
+    }).addFactory(FactoryPanel.CountLabel.class, new ComponentFactory<FactoryPanel.CountLabel>() {
+
+      @Override
+      public FactoryPanel.CountLabel create(Component owner, String id) {
+        return new FactoryPanel.CountLabel(id, Model.of(42));
+      }
+    }));
+    this.tester.startComponentInPage(FactoryPanel.class);
+    this.tester.assertLabel("testObject:greeting", "Hello");
+    this.tester.assertLabel("testObject:count", "42");
+
+    this.tester = new AutoWireTester();
+    try {
+      new FactoryPanel("panel");
+      fail();
+    }
+    catch (WicketRuntimeException e) {
+      assertTrue(e.getMessage(), e.getMessage().contains("No component factory named greeting"));
+    }
+
+    this.tester = new AutoWireTester(new AutoWireSettings().addFactory("greeting", new ComponentFactory<Label>() {
+
+      @Override
+      public Label create(Component owner, String id) {
+        return null;
+      }
+    }));
+    try {
+      new FactoryPanel("panel");
+      fail();
+    }
+    catch (WicketRuntimeException e) {
+      assertTrue(e.getMessage(), e.getMessage().contains("Component factory greeting returned null for field"));
+      assertTrue(e.getMessage(), e.getMessage().endsWith("greeting of " + FactoryPanel.class.getName()));
+    }
+  }
+
   /**
    * Assert that it is possible to overwrite the automatically created component
    * with a custom one.
@@ -167,6 +298,464 @@ public class AutoWireTest {
     assertTrue(autoWire.hasAutoComponentAnnotatedFields(ChildMarkupContainer.NestedContainer.class));
   }
 
+  /**
+   * Assert that markup variants with the same component structure share one
+   * wiring plan, if enabled.
+   */
+  @Test
+  public void testKeyPlansByStructure() {
+    this.tester = new AutoWireTester(new AutoWireSettings().setKeyPlansByStructure(true));
+    int plans = getAutoWire().getPlanCount(StylePanel.class);
+    this.tester.startComponentInPage(StylePanel.class);
+    this.tester.getSession().setStyle("compact");
+    this.tester.startComponentInPage(StylePanel.class);
+    this.tester.assertComponent("testObject:container:label", Label.class);
+    assertEquals(plans + 1, getAutoWire().getPlanCount(StylePanel.class));
+  }
+
+  /**
+   * Assert that each markup variant gets its own plan by default, and that
+   * equal plans are shared once built.
+   */
+  @Test
+  public void testKeyPlansByMarkup() {
+    int plans = getAutoWire().getPlanCount(StylePanel.class);
+    this.tester.startComponentInPage(StylePanel.class);
+    this.tester.getSession().setStyle("compact");
+    this.tester.startComponentInPage(StylePanel.class);
+    this.tester.assertComponent("testObject:container:label", Label.class);
+    assertEquals(2, getAutoWire().getMetrics().getPlanBuilds());
+    assertEquals(plans + 1, getAutoWire().getPlanCount(StylePanel.class));
+  }
+
+  /**
+   * Assert that markup variants of equal structure keep one plan in memory.
+   * PlanFootprint in the benchmarks module reports the heap they retain.
+   */
+  @Test
+  public void testPlanFootprint() {
+    this.tester = new AutoWireTester(new AutoWireSettings().setPlanCacheSize(2 * FOOTPRINT_VARIANTS));
+    for (int i = 0; i < FOOTPRINT_VARIANTS; i++) {
+      this.tester.startComponentInPage(new VariantPanel("testObject", i));
+    }
+    this.tester.assertComponent("testObject:container:label", Label.class);
+    // a plan built per variant, one of them kept
+    assertEquals(FOOTPRINT_VARIANTS, getAutoWire().getMetrics().getPlanBuilds());
+    assertEquals(1, getAutoWire().getPlanCount(VariantPanel.class));
+    assertEquals(1, getAutoWire().getCachedPlanCount());
+  }
+
+  /**
+   * Assert that components outside the configured scope are not auto-wired.
+   */
+  @Test
+  public void testScope() {
+    this.tester = new AutoWireTester(new AutoWireSettings().addScopePackage("com.example"));
+    BasicPanel panel = new BasicPanel("panel");
+    assertNull(panel.label);
+    assertFalse(getAutoWire().hasAutoComponentAnnotatedFields(BasicPanel.class));
+  }
+
+  /**
+   * Assert that cache hits and misses and wiring time are counted and passed
+   * to listeners.
+   */
+  @Test
+  public void testMetrics() {
+    final List<Class<?>> planned = new ArrayList<Class<?>>();
+    final List<Class<?>> hits = new ArrayList<Class<?>>();
+    this.tester = new AutoWireTester(new AutoWireSettings().addListener(new AutoWireListener() {
+
+      @Override
+      public void onClassCache(Class<? extends Component> type, boolean hit) {
+        if (hit) {
+          hits.add(type);
+        }
+      }
+
+      @Override
+      public void onMarkupCache(Class<? extends Component> type, boolean hit) {
+      }
+
+      @Override
+      public void onPlanBuilt(Class<? extends Component> type, long nanos) {
+        planned.add(type);
+      }
+
+      @Override
+      public void onInstantiated(Class<? extends Component> type, long nanos) {
+      }
+
+      @Override
+      public void onInitialized(Class<? extends Component> type, long nanos) {
+      }
+    }));
+    this.tester.startComponentInPage(BasicPanel.class);
+    this.tester.startComponentInPage(BasicPanel.class);
+
+    AutoWireMetrics metrics = AutoWire.get(this.tester.getApplication()).getMetrics();
+    assertTrue(metrics.getClassCacheHits() > 0);
+    assertTrue(metrics.getClassCacheMisses() > 0);
+    assertEquals(1, metrics.getMarkupCacheHits());
+    assertEquals(1, metrics.getMarkupCacheMisses());
+    assertEquals(1, metrics.getPlanBuilds());
+    assertEquals(1, metrics.getCachedPlans());
+    assertTrue(metrics.getEstimatedCacheBytes() > 0);
+    assertEquals(2, metrics.getTiming(BasicPanel.class).getInstantiations());
+    assertEquals(2, metrics.getTiming(BasicPanel.class).getInitializations());
+    assertEquals(Arrays.<Class<?>> asList(BasicPanel.class), planned);
+    // classes without anything to wire are not counted
+    assertEquals(Arrays.<Class<?>> asList(BasicPanel.class), hits);
+  }
+
+  /**
+   * Assert that the metrics are registered in the platform MBean server until
+   * the application is destroyed.
+   */
+  @Test
+  public void testJmx() throws Exception {
+    this.tester = new AutoWireTester(new AutoWireSettings().setJmxEnabled(true));
+    this.tester.startComponentInPage(BasicPanel.class);
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    ObjectName name = new ObjectName("com.github.wicket.autowire:type=AutoWire,application="
+                                     + ObjectName.quote(this.tester.getApplication().getName()));
+    assertEquals(1L, server.getAttribute(name, "MarkupCacheMisses"));
+    this.tester.destroy();
+    assertFalse(server.isRegistered(name));
+  }
+
+  /**
+   * Assert that classes are inspected on install and not again on their first
+   * instantiation.
+   */
+  @Test
+  public void testWarmUp() {
+    this.tester = new AutoWireTester(new AutoWireSettings().addWarmUpClass(BasicPanel.class));
+    assertTrue(getAutoWire().hasAutoComponentAnnotatedFields(BasicPanel.class));
+    this.tester.startComponentInPage(BasicPanel.class);
+    this.tester.assertComponent("testObject:label", Label.class);
+    assertNotNull(getAutoWire().getMetrics().getTiming(BasicPanel.class));
+  }
+
+  /**
+   * Assert that the component classes of a package are inspected on install.
+   */
+  @Test
+  public void testWarmUpPackage() {
+    this.tester = new AutoWireTester(new AutoWireSettings().addWarmUpPackage("com.github.wicket.autowire"));
+    assertTrue(getAutoWire().hasAutoComponentAnnotatedFields(BasicPanel.class));
+    assertTrue(getAutoWire().hasAutoComponentAnnotatedFields(SubClassPage.class));
+    assertFalse(getAutoWire().hasAutoComponentAnnotatedFields(BasicPanelNoAuto.class));
+    assertTrue(ClassScanner.scan(getClass().getClassLoader(), "org.apache.wicket.markup.html.basic").contains(Label.class));
+  }
+
+  /**
+   * Assert that deferred components are only created if they are in the
+   * markup of the active style.
+   */
+  @Test
+  public void testDeferInstantiation() {
+    this.tester = new AutoWireTester(new AutoWireSettings().setDeferInstantiation(true));
+    DeferredPanel panel = new DeferredPanel("testObject");
+    assertNull(panel.label);
+    this.tester.startComponentInPage(panel);
+    this.tester.assertComponent("testObject:container:label", Label.class);
+    this.tester.assertComponent("testObject:container:details", Label.class);
+
+    // the second instance uses the cached plan
+    this.tester.startComponentInPage(DeferredPanel.class);
+    this.tester.assertComponent("testObject:container:details", Label.class);
+
+    this.tester.getSession().setStyle("compact");
+    panel = new DeferredPanel("testObject");
+    this.tester.startComponentInPage(panel);
+    this.tester.assertComponent("testObject:container:label", Label.class);
+    assertNull(panel.details);
+
+    this.tester.startComponentInPage(BasicPanel.class);
+    this.tester.assertComponent("testObject:link", BasicPanel.TestLink.class);
+  }
+
+  /**
+   * Assert that all components are created by default, even if the markup of
+   * the active style omits them.
+   */
+  @Test
+  public void testInstantiation() {
+    this.tester.getSession().setStyle("compact");
+    DeferredPanel panel = new DeferredPanel("testObject");
+    this.tester.startComponentInPage(panel);
+    assertNotNull(panel.details);
+    assertNull(panel.details.getParent());
+  }
+
+  /**
+   * Assert that in deployment mode markup is not looked up again in a context
+   * where it was not found.
+   */
+  @Test
+  public void testMissingMarkup() {
+    this.tester = new AutoWireTester(new MockApplication() {
+
+      @Override
+      public RuntimeConfigurationType getConfigurationType() {
+        return RuntimeConfigurationType.DEPLOYMENT;
+      }
+    }, new AutoWireSettings());
+    NoMarkupContainer container = new NoMarkupContainer("container");
+    getAutoWire().onInitialize(container);
+    assertEquals(1, container.markupLookups);
+    container = new NoMarkupContainer("container");
+    getAutoWire().onInitialize(container);
+    assertEquals(0, container.markupLookups);
+    container = new NoMarkupContainer("other");
+    getAutoWire().onInitialize(container);
+    assertEquals(1, container.markupLookups);
+  }
+
+  /**
+   * Assert that in development mode markup is looked up again, as it may have
+   * been added.
+   */
+  @Test
+  public void testMissingMarkupInDevelopment() {
+    getAutoWire().onInitialize(new NoMarkupContainer("container"));
+    NoMarkupContainer container = new NoMarkupContainer("container");
+    getAutoWire().onInitialize(container);
+    assertEquals(1, container.markupLookups);
+  }
+
+  /**
+   * Assert that the plans of modified markup are dropped when wicket reloads
+   * it, and that markup is not watched in deployment mode.
+   */
+  @Test
+  public void testMarkupReload() throws Exception {
+    final TestWatcher watcher = new TestWatcher();
+    this.tester = new AutoWireTester(new MockApplication() {
+
+      @Override
+      protected void init() {
+        super.init();
+        getResourceSettings().setResourcePollFrequency(Duration.ONE_HOUR);
+        getResourceSettings().setResourceWatcher(watcher);
+      }
+    }, new AutoWireSettings());
+    this.tester.startComponentInPage(BasicPanel.class);
+    assertEquals(1, getAutoWire().getPlanCount(BasicPanel.class));
+    File markup = new File(BasicPanel.class.getResource("BasicPanel.html").toURI());
+    long lastModified = markup.lastModified();
+    try {
+      assertTrue(markup.setLastModified(lastModified + 60000));
+      watcher.check();
+    }
+    finally {
+      markup.setLastModified(lastModified);
+    }
+    assertEquals(0, getAutoWire().getPlanCount(BasicPanel.class));
+    this.tester.startComponentInPage(BasicPanel.class);
+    assertEquals(1, getAutoWire().getPlanCount(BasicPanel.class));
+
+    this.tester = new AutoWireTester(new MockApplication() {
+
+      @Override
+      public RuntimeConfigurationType getConfigurationType() {
+        return RuntimeConfigurationType.DEPLOYMENT;
+      }
+    }, new AutoWireSettings());
+    assertNull(getAutoWire().getMarkupWatch());
+  }
+
+  private static class TestWatcher extends ModificationWatcher {
+
+    void check() {
+      checkModified();
+    }
+  }
+
+  /**
+   * Assert that in tiered mode components are wired on a plan cache miss, and
+   * that the plan is shared by structure afterwards.
+   */
+  @Test
+  public void testTieredPlanBuilding() throws Exception {
+    this.tester = new AutoWireTester(new AutoWireSettings().setTieredPlanBuilding(true)
+                                                           .setKeyPlansByStructure(true));
+    this.tester.startComponentInPage(StylePanel.class);
+    Background.flush();
+    this.tester.getSession().setStyle("compact");
+    MessageAppender appender = new MessageAppender();
+    Logger logger = Logger.getLogger(AutoWire.class);
+    Level level = logger.getLevel();
+    logger.setLevel(Level.TRACE);
+    logger.addAppender(appender);
+    try {
+      this.tester.startComponentInPage(StylePanel.class);
+    }
+    finally {
+      logger.removeAppender(appender);
+      logger.setLevel(level);
+    }
+    this.tester.assertComponent("testObject:container:label", Label.class);
+    // the plan shared by structure is used right away, none is built
+    for (String message : appender.messages) {
+      assertFalse(message, message.startsWith("Performing auto wiring for component"));
+    }
+    Background.flush();
+    assertEquals(1, getAutoWire().getPlanCount(StylePanel.class));
+  }
+
+  /**
+   * Assert that requests slower than the threshold log their auto-wiring time,
+   * but not the redirected request that wires nothing.
+   */
+  @Test
+  public void testSlowRequestLog() {
+    MessageAppender appender = new MessageAppender();
+    Logger.getLogger(RequestProfiler.class).addAppender(appender);
+    try {
+      this.tester = new AutoWireTester(new AutoWireSettings().setSlowRequestMillis(0));
+      this.tester.startPage(PerformanceTest.class);
+    }
+    finally {
+      Logger.getLogger(RequestProfiler.class).removeAppender(appender);
+    }
+    List<String> messages = appender.messages;
+    assertEquals(messages.toString(), 1, messages.size());
+    assertTrue(messages.get(0),
+               messages.get(0).contains("initialization") && messages.get(0).contains("(1001)"));
+    assertTrue(messages.get(0), messages.get(0).contains("slowest: com.github.wicket.autowire."));
+  }
+
+  /**
+   * Assert that the items of a repeater share one plan lookup.
+   */
+  @Test
+  public void testRepeater() {
+    this.tester.startPage(PerformanceTest.class);
+    AutoWireMetrics metrics = getAutoWire().getMetrics();
+    // the page and the first panel
+    assertEquals(2, metrics.getMarkupCacheMisses());
+    assertEquals(999, metrics.getMarkupCacheHits());
+    assertEquals(1000, metrics.getTiming(BasicPanel.class).getInitializations());
+  }
+
+  /**
+   * Assert that panels alternating between two markups are wired with the
+   * recently used plans, without building a plan again. What this path
+   * allocates is measured by LifecycleBenchmark with the GC profiler.
+   */
+  @Test
+  public void testRecentPlans() {
+    this.tester.startPage(PerformanceTest.class);
+    AutoWire autoWire = getAutoWire();
+    wireAlternating(autoWire);
+    long builds = autoWire.getMetrics().getPlanBuilds();
+    long hits = autoWire.getMetrics().getMarkupCacheHits();
+    long instantiations = autoWire.getMetrics().getTiming(StylePanel.class).getInstantiations();
+    wireAlternating(autoWire);
+    assertEquals(builds, autoWire.getMetrics().getPlanBuilds());
+    assertEquals(hits + RECENT_PANELS, autoWire.getMetrics().getMarkupCacheHits());
+    assertEquals(instantiations + RECENT_PANELS,
+                 autoWire.getMetrics().getTiming(StylePanel.class).getInstantiations());
+    assertEquals(2, autoWire.getRecentPlanCount(StylePanel.class));
+  }
+
+  /**
+   * Assert that plans used from the recently used plans are not evicted as
+   * idle, and that evicted plans are not kept there.
+   */
+  @Test
+  public void testRecentPlanEviction() throws Exception {
+    this.tester = new AutoWireTester(new AutoWireSettings().setPlanIdleSeconds(1));
+    this.tester.startPage(PerformanceTest.class);
+    AutoWire autoWire = getAutoWire();
+    wireAlternating(autoWire);
+    long builds = autoWire.getMetrics().getPlanBuilds();
+    Thread.sleep(2100);
+    wireAlternating(autoWire);
+    autoWire.sweepPlans(StylePanel.class);
+    assertEquals(2, autoWire.getRecentPlanCount(StylePanel.class));
+    wireAlternating(autoWire);
+    assertEquals(builds, autoWire.getMetrics().getPlanBuilds());
+
+    Thread.sleep(2100);
+    autoWire.sweepPlans(StylePanel.class);
+    assertEquals(0, autoWire.getPlanCount(StylePanel.class));
+    assertEquals(0, autoWire.getRecentPlanCount(StylePanel.class));
+    wireAlternating(autoWire);
+    assertEquals(builds + 2, autoWire.getMetrics().getPlanBuilds());
+  }
+
+  /**
+   * Assert that initializing panels alternating between two markups from the
+   * recently used plans allocates at most a few bytes per panel more than
+   * adding their children manually, once the compiler has settled.
+   */
+  @Test
+  public void testAllocation() {
+    this.tester.startPage(PerformanceTest.class);
+    AutoWire autoWire = getAutoWire();
+    // escape analysis changes the figures
+    for (int i = 0; i < 20; i++) {
+      measureAllocation(autoWire, true);
+      measureAllocation(autoWire, false);
+    }
+    long autoWired = measureAllocation(autoWire, true) / ALLOCATION_PANELS;
+    long manual = measureAllocation(autoWire, false) / ALLOCATION_PANELS;
+    System.out.println("Allocated per panel: auto-wired " + autoWired + " bytes, manual " + manual + " bytes");
+    assertTrue(autoWired + " > " + manual + " + " + ALLOCATION_SLACK, autoWired <= manual + ALLOCATION_SLACK);
+  }
+
+  // bytes allocated by initializing panels alternating between two markups
+  private long measureAllocation(AutoWire autoWire, boolean autoWired) {
+    WebPage page = new WebPage() {
+
+      private static final long serialVersionUID = 1L;
+    };
+    StylePanel[] panels = new StylePanel[ALLOCATION_PANELS];
+    for (int i = 0; i < panels.length; i++) {
+      panels[i] = new StylePanel("panel" + i);
+      page.add(panels[i]);
+    }
+    Session session = this.tester.getSession();
+    ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long thread = Thread.currentThread().getId();
+    long begin = threads.getThreadAllocatedBytes(thread);
+    for (int i = 0; i < panels.length; i++) {
+      session.setStyle(i % 2 == 0 ? null : "compact");
+      if (autoWired) {
+        autoWire.onInitialize(panels[i]);
+      }
+      else {
+        // the fields were assigned on instantiation already
+        panels[i].getMarkup(null);
+        panels[i].add(panels[i].container);
+        panels[i].container.add(panels[i].label);
+      }
+    }
+    long allocated = threads.getThreadAllocatedBytes(thread) - begin;
+    session.setStyle(null);
+    return allocated;
+  }
+
+  // the installed AutoWire handles the instantiation of each panel, the page
+  // is never initialized though
+  private void wireAlternating(AutoWire autoWire) {
+    WebPage page = new WebPage() {
+
+      private static final long serialVersionUID = 1L;
+    };
+    Session session = this.tester.getSession();
+    for (int i = 0; i < RECENT_PANELS; i++) {
+      StylePanel panel = new StylePanel("panel" + i);
+      page.add(panel);
+      session.setStyle(i % 2 == 0 ? null : "compact");
+      autoWire.onInitialize(panel);
+    }
+    session.setStyle(null);
+  }
+
   /**
    * Adds a loop to check if auto-wiring is too slow.
    */
@@ -186,4 +775,25 @@ public class AutoWireTest {
     new WicketTester().startPage(PerformanceCompareTest.class);
     System.out.println("Performance compare test took " + (System.currentTimeMillis() - begin) + "ms");
   }
+
+  // collects the messages of a logger
+  private static class MessageAppender extends AppenderSkeleton {
+
+    private final List<String> messages = new ArrayList<String>();
+
+    @Override
+    protected void append(LoggingEvent event) {
+      messages.add(event.getRenderedMessage());
+    }
+
+    @Override
+    public boolean requiresLayout() {
+      return false;
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+
 }
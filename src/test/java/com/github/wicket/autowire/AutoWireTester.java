@@ -16,12 +16,22 @@
  */
 package com.github.wicket.autowire;
 
+import org.apache.wicket.protocol.http.WebApplication;
 import org.apache.wicket.util.tester.WicketTester;
 
 public class AutoWireTester extends WicketTester {
 
 	public AutoWireTester() {
-		AutoWire.install(getApplication());
+		this(new AutoWireSettings());
+	}
+
+	public AutoWireTester(AutoWireSettings settings) {
+		AutoWire.install(getApplication(), settings);
+	}
+
+	public AutoWireTester(WebApplication application, AutoWireSettings settings) {
+		super(application);
+		AutoWire.install(getApplication(), settings);
 	}
 
 }
\ No newline at end of file
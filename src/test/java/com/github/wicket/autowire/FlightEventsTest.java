@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package com.github.wicket.autowire;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compiled on Java 11 and later only, see the flight-recorder profile.
+ */
+public class FlightEventsTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  /**
+   * Assert that flight recorder events are recorded once enabled.
+   */
+  @Test
+  public void testFlightRecorderEvents() throws Exception {
+    AutoWireTester tester = new AutoWireTester();
+    Recording recording = new Recording();
+    recording.enable("com.github.wicket.autowire.PlanBuild");
+    recording.enable("com.github.wicket.autowire.Instantiation");
+    recording.enable("com.github.wicket.autowire.Initialization");
+    recording.start();
+    tester.startComponentInPage(BasicPanel.class);
+    recording.stop();
+    File file = folder.newFile("autowire.jfr");
+    recording.dump(file.toPath());
+    recording.close();
+
+    Map<String, Integer> counts = new HashMap<String, Integer>();
+    for (RecordedEvent event : RecordingFile.readAllEvents(file.toPath())) {
+      String name = event.getEventType().getName();
+      counts.put(name, counts.containsKey(name) ? counts.get(name) + 1 : 1);
+    }
+    assertEquals(Integer.valueOf(1), counts.get("com.github.wicket.autowire.PlanBuild"));
+    // link and label
+    assertEquals(Integer.valueOf(2), counts.get("com.github.wicket.autowire.Instantiation"));
+    assertEquals(Integer.valueOf(1), counts.get("com.github.wicket.autowire.Initialization"));
+  }
+
+}
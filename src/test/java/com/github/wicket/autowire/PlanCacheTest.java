@@ -0,0 +1,51 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package com.github.wicket.autowire;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class PlanCacheTest {
+
+  /**
+   * Assert that the cache is reduced below its size by an eviction run.
+   */
+  @Test
+  public void testSizeBound() throws Exception {
+    PlanCache<Integer, String> cache = new PlanCache<Integer, String>(8, Integer.MAX_VALUE);
+    for (int i = 0; i < 20; i++) {
+      assertNull(cache.putIfAbsent(i, "plan" + i));
+    }
+    // a scheduled eviction run may already have started during the inserts
+    Background.flush();
+    cache.sweep();
+    assertTrue(cache.size() >= 6 && cache.size() <= 8);
+  }
+
+  /**
+   * Assert that idle plans are evicted, even if the cache is not full.
+   */
+  @Test
+  public void testIdle() throws InterruptedException {
+    PlanCache<Integer, String> cache = new PlanCache<Integer, String>(8, 0);
+    cache.putIfAbsent(1, "plan");
+    Thread.sleep(1100);
+    cache.sweep();
+    assertEquals(0, cache.size());
+  }
+
+}
@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package com.github.wicket.autowire;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class SingleFlightTest {
+
+  /**
+   * Assert that a thread waiting for the value of another thread finds it in
+   * the cache once it has it, as auto-wiring looks up the class again on
+   * initialization. The cache gives the waiting thread time to return early.
+   */
+  @Test
+  public void testCachedBeforeRelease() throws Exception {
+    final SingleFlight<String, String> loading = new SingleFlight<String, String>();
+    final CountDownLatch loaderStarted = new CountDownLatch(1);
+    final CountDownLatch waiterReturned = new CountDownLatch(1);
+    final ConcurrentHashMap<String, String> cache = new ConcurrentHashMap<String, String>() {
+
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      public String put(String key, String value) {
+        try {
+          waiterReturned.await(500, TimeUnit.MILLISECONDS);
+        }
+        catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        return super.put(key, value);
+      }
+    };
+    final CountDownLatch waiterStarted = new CountDownLatch(1);
+    final Thread loader = new Thread() {
+
+      @Override
+      public void run() {
+        loading.get(cache, "key", new Callable<String>() {
+
+          @Override
+          public String call() throws InterruptedException {
+            loaderStarted.countDown();
+            waiterStarted.await();
+            // let the waiter block on the shared computation
+            Thread.sleep(100);
+            return "value";
+          }
+        });
+      }
+    };
+    loader.start();
+    loaderStarted.await();
+    waiterStarted.countDown();
+    loading.get(cache, "key", new Callable<String>() {
+
+      @Override
+      public String call() {
+        throw new AssertionError("computed twice");
+      }
+    });
+    final String cached = cache.get("key");
+    waiterReturned.countDown();
+    loader.join();
+    assertEquals("value", cached);
+  }
+
+}
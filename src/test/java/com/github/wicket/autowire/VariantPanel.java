@@ -0,0 +1,57 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.wicket.autowire;
+
+import org.apache.wicket.MarkupContainer;
+import org.apache.wicket.markup.IMarkupCacheKeyProvider;
+import org.apache.wicket.markup.IMarkupResourceStreamProvider;
+import org.apache.wicket.markup.html.WebMarkupContainer;
+import org.apache.wicket.markup.html.basic.Label;
+import org.apache.wicket.markup.html.panel.Panel;
+import org.apache.wicket.util.resource.IResourceStream;
+import org.apache.wicket.util.resource.StringResourceStream;
+
+/**
+ * Has its own cached markup per variant, all variants differ in text only.
+ */
+public class VariantPanel extends Panel implements IMarkupResourceStreamProvider, IMarkupCacheKeyProvider {
+
+  private static final long serialVersionUID = 1L;
+
+  private final int variant;
+
+  public VariantPanel(final String id, final int variant) {
+    super(id);
+    this.variant = variant;
+  }
+
+  @AutoComponent WebMarkupContainer container;
+
+  @AutoComponent Label label;
+
+  @Override
+  public IResourceStream getMarkupResourceStream(MarkupContainer container, Class<?> containerClass) {
+    return new StringResourceStream("<wicket:panel><div wicket:id=\"container\"><h1>Variant " + variant
+                                    + "</h1><span wicket:id=\"label\"></span></div></wicket:panel>");
+  }
+
+  @Override
+  public String getCacheKey(MarkupContainer container, Class<?> containerClass) {
+    return VariantPanel.class.getName() + "_" + variant;
+  }
+
+}
@@ -0,0 +1,304 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package com.github.wicket.autowire;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.wicket.Component;
+import org.apache.wicket.Page;
+import org.apache.wicket.RuntimeConfigurationType;
+import org.apache.wicket.application.IComponentInitializationListener;
+import org.apache.wicket.application.IComponentInstantiationListener;
+import org.apache.wicket.markup.MarkupFactory;
+import org.apache.wicket.mock.MockApplication;
+import org.apache.wicket.util.tester.WicketTester;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Renders a mix of auto-wired pages and panels from several threads sharing
+ * one {@link AutoWire}, as the request threads of an application do. Every
+ * thread has its own tester and application, but they share one markup cache,
+ * so all threads wire the same markup like the requests of one application.
+ * Applications run in deployment mode.
+ * {@link #coldStart} renders the whole mix once per iteration with a new
+ * AutoWire, so threads inspect classes and build plans at the same time.
+ * {@link #steadyState} renders one component of the mix per operation with
+ * warm caches. Both report the time threads spent blocked on monitors and
+ * waiting, e.g. for a plan built by another thread.
+ * <p>
+ * {@link #main(String[])} runs them with 1 thread, doubling up to the number
+ * of cores, and prints a summary.
+ */
+@Fork(1)
+public class ConcurrentRenderBenchmark {
+
+  // rendered in turn, each thread starts at another position
+  private static final List<Class<? extends Component>> MIX = Arrays.<Class<? extends Component>> asList(BasicPage.class,
+                                                                                                         SubClassPage.class,
+                                                                                                         ContainerPage.class,
+                                                                                                         BorderPage.class,
+                                                                                                         MediumPanel.class,
+                                                                                                         LargePanel.class);
+
+  /**
+   * The markup factory, and so the markup cache, of the applications of all
+   * threads.
+   */
+  @State(Scope.Benchmark)
+  public static class Markup {
+
+    final MarkupFactory factory = new MarkupFactory();
+    private WicketTester owner;
+
+    @Setup
+    public void setUp() {
+      // the cache keeps the application it is created in
+      owner = new WicketTester(newApplication());
+      owner.getApplication().getMarkupSettings().setMarkupFactory(factory);
+      factory.getMarkupCache();
+    }
+
+    @TearDown
+    public void tearDown() {
+      owner.destroy();
+    }
+  }
+
+  @State(Scope.Benchmark)
+  public static class Warm {
+
+    final AutoWire autoWire = new AutoWire(new AutoWireSettings());
+  }
+
+  @State(Scope.Benchmark)
+  public static class Cold {
+
+    AutoWire autoWire;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+      autoWire = new AutoWire(new AutoWireSettings());
+    }
+  }
+
+  /**
+   * Forwards the component listeners of the thread's application to the
+   * shared AutoWire of the benchmark.
+   */
+  @State(Scope.Thread)
+  public static class Renderer implements IComponentInstantiationListener, IComponentInitializationListener {
+
+    private static final AtomicInteger THREADS = new AtomicInteger();
+
+    private WicketTester tester;
+    private AutoWire autoWire;
+    private int next;
+
+    @Setup
+    public void setUp(Markup markup) {
+      tester = new WicketTester(newApplication());
+      tester.getApplication().getMarkupSettings().setMarkupFactory(markup.factory);
+      tester.getApplication().getComponentInstantiationListeners().add(this);
+      tester.getApplication().getComponentInitializationListeners().add(this);
+      next = THREADS.getAndIncrement() % MIX.size();
+    }
+
+    @TearDown
+    public void tearDown() {
+      tester.destroy();
+    }
+
+    @SuppressWarnings("unchecked")
+    Component render(AutoWire autoWire) {
+      this.autoWire = autoWire;
+      final Class<? extends Component> type = MIX.get(next);
+      next = (next + 1) % MIX.size();
+      if (Page.class.isAssignableFrom(type)) {
+        return tester.startPage((Class<? extends Page>) type);
+      }
+      return tester.startComponentInPage(type);
+    }
+
+    @Override
+    public void onInstantiation(Component component) {
+      autoWire.onInstantiation(component);
+    }
+
+    @Override
+    public void onInitialize(Component component) {
+      autoWire.onInitialize(component);
+    }
+  }
+
+  static MockApplication newApplication() {
+    return new MockApplication() {
+
+      @Override
+      public RuntimeConfigurationType getConfigurationType() {
+        return RuntimeConfigurationType.DEPLOYMENT;
+      }
+    };
+  }
+
+  /**
+   * Blocked and waiting time of the thread while rendering, per iteration,
+   * from the thread MXBean. Times need contention monitoring, which is
+   * enabled if supported.
+   */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class Contention {
+
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+
+    public long blockedCount;
+    public double blockedMillis;
+    public long waitedCount;
+    public double waitedMillis;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+      if (THREAD_MX_BEAN.isThreadContentionMonitoringSupported()) {
+        THREAD_MX_BEAN.setThreadContentionMonitoringEnabled(true);
+      }
+      blockedCount = 0;
+      blockedMillis = 0;
+      waitedCount = 0;
+      waitedMillis = 0;
+    }
+
+    ThreadInfo begin() {
+      return THREAD_MX_BEAN.getThreadInfo(Thread.currentThread().getId());
+    }
+
+    void end(ThreadInfo begin) {
+      final ThreadInfo end = THREAD_MX_BEAN.getThreadInfo(Thread.currentThread().getId());
+      blockedCount += end.getBlockedCount() - begin.getBlockedCount();
+      blockedMillis += Math.max(0, end.getBlockedTime() - begin.getBlockedTime());
+      waitedCount += end.getWaitedCount() - begin.getWaitedCount();
+      waitedMillis += Math.max(0, end.getWaitedTime() - begin.getWaitedTime());
+    }
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.SingleShotTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  @Warmup(iterations = 5)
+  @Measurement(iterations = 20)
+  public Component coldStart(Cold cold, Renderer renderer, Contention contention) {
+    final ThreadInfo begin = contention.begin();
+    Component component = null;
+    for (int i = 0; i < MIX.size(); i++) {
+      component = renderer.render(cold.autoWire);
+    }
+    contention.end(begin);
+    return component;
+  }
+
+  @Benchmark
+  @BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  @Warmup(iterations = 5, time = 1)
+  @Measurement(iterations = 5, time = 1)
+  public Component steadyState(Warm warm, Renderer renderer, Contention contention) {
+    final ThreadInfo begin = contention.begin();
+    final Component component = renderer.render(warm.autoWire);
+    contention.end(begin);
+    return component;
+  }
+
+  /**
+   * Runs the benchmarks of this class with 1, 2, 4, ... threads up to the
+   * number of cores. Other JMH options can be passed on the command line.
+   */
+  public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+    final CommandLineOptions options = new CommandLineOptions(args);
+    final int cores = Runtime.getRuntime().availableProcessors();
+    final List<String> summary = new ArrayList<String>();
+    summary.add(String.format(Locale.ROOT,
+                              "%-8s %-12s %-7s %14s %12s %16s %16s",
+                              "Threads",
+                              "Benchmark",
+                              "Mode",
+                              "Score",
+                              "p99 ms/op",
+                              "Blocked ms/iter",
+                              "Waited ms/iter"));
+    for (int threads = 1;; threads = Math.min(threads * 2, cores)) {
+      final Collection<RunResult> results = new Runner(new OptionsBuilder().parent(options)
+                                                                           .include(ConcurrentRenderBenchmark.class.getName())
+                                                                           .threads(threads)
+                                                                           .addProfiler(GCProfiler.class)
+                                                                           .build()).run();
+      for (RunResult result : results) {
+        final Result<?> primary = result.getPrimaryResult();
+        final Mode mode = result.getParams().getMode();
+        final String name = result.getParams().getBenchmark();
+        summary.add(String.format(Locale.ROOT,
+                                  "%-8d %-12s %-7s %14s %12s %16.1f %16.1f",
+                                  threads,
+                                  name.substring(name.lastIndexOf('.') + 1),
+                                  mode.shortLabel(),
+                                  String.format(Locale.ROOT, "%.3f %s", primary.getScore(), primary.getScoreUnit()),
+                                  mode == Mode.Throughput ? "-" : String.format(Locale.ROOT,
+                                                                                 "%.3f",
+                                                                                 primary.getStatistics()
+                                                                                        .getPercentile(99)),
+                                  getScore(result, "blockedMillis"),
+                                  getScore(result, "waitedMillis")));
+      }
+      if (threads == cores) {
+        break;
+      }
+    }
+    for (String line : summary) {
+      System.out.println(line);
+    }
+  }
+
+  private static double getScore(RunResult result, String counter) {
+    final Result<?> secondary = result.getSecondaryResults().get(counter);
+    return secondary == null ? Double.NaN : secondary.getScore();
+  }
+
+}
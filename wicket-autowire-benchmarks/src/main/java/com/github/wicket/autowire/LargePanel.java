@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package com.github.wicket.autowire;
+
+import org.apache.wicket.markup.html.WebMarkupContainer;
+import org.apache.wicket.markup.html.basic.Label;
+import org.apache.wicket.markup.html.panel.Panel;
+
+/**
+ * Forty auto components in four containers.
+ */
+public class LargePanel extends Panel {
+
+  private static final long serialVersionUID = 1L;
+
+  public LargePanel(final String id) {
+    super(id);
+  }
+
+  @AutoComponent
+  WebMarkupContainer box0;
+
+  @AutoComponent
+  Label label0_0;
+
+  @AutoComponent
+  Label label0_1;
+
+  @AutoComponent
+  Label label0_2;
+
+  @AutoComponent
+  Label label0_3;
+
+  @AutoComponent
+  Label label0_4;
+
+  @AutoComponent
+  Label label0_5;
+
+  @AutoComponent
+  Label label0_6;
+
+  @AutoComponent
+  Label label0_7;
+
+  @AutoComponent
+  Label label0_8;
+
+  @AutoComponent
+  WebMarkupContainer box1;
+
+  @AutoComponent
+  Label label1_0;
+
+  @AutoComponent
+  Label label1_1;
+
+  @AutoComponent
+  Label label1_2;
+
+  @AutoComponent
+  Label label1_3;
+
+  @AutoComponent
+  Label label1_4;
+
+  @AutoComponent
+  Label label1_5;
+
+  @AutoComponent
+  Label label1_6;
+
+  @AutoComponent
+  Label label1_7;
+
+  @AutoComponent
+  Label label1_8;
+
+  @AutoComponent
+  WebMarkupContainer box2;
+
+  @AutoComponent
+  Label label2_0;
+
+  @AutoComponent
+  Label label2_1;
+
+  @AutoComponent
+  Label label2_2;
+
+  @AutoComponent
+  Label label2_3;
+
+  @AutoComponent
+  Label label2_4;
+
+  @AutoComponent
+  Label label2_5;
+
+  @AutoComponent
+  Label label2_6;
+
+  @AutoComponent
+  Label label2_7;
+
+  @AutoComponent
+  Label label2_8;
+
+  @AutoComponent
+  WebMarkupContainer box3;
+
+  @AutoComponent
+  Label label3_0;
+
+  @AutoComponent
+  Label label3_1;
+
+  @AutoComponent
+  Label label3_2;
+
+  @AutoComponent
+  Label label3_3;
+
+  @AutoComponent
+  Label label3_4;
+
+  @AutoComponent
+  Label label3_5;
+
+  @AutoComponent
+  Label label3_6;
+
+  @AutoComponent
+  Label label3_7;
+
+  @AutoComponent
+  Label label3_8;
+
+}
@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package com.github.wicket.autowire;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.wicket.Component;
+import org.apache.wicket.MarkupContainer;
+import org.apache.wicket.Session;
+import org.apache.wicket.markup.html.WebPage;
+import org.apache.wicket.util.tester.WicketTester;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Both phases of auto-wiring a {@link BasicPanel}, with and without cached
+ * metadata. AutoWire is not installed in the application, the benchmarks call
+ * the listener methods themselves. Every invocation constructs a new panel and
+ * adds it to an uninitialized page, so its markup can be resolved. Subtract
+ * {@link #construct()} to get the cost of auto-wiring alone. The allocation
+ * rate per operation of the hit benchmarks, reported by the GC profiler, shows
+ * what resolving a cached plan allocates.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LifecycleBenchmark {
+
+  private WicketTester tester;
+  private AutoWire autoWire;
+  private MarkupContainer page;
+  private Session session;
+  private boolean compact;
+
+  @Setup
+  public void setUp() {
+    tester = new WicketTester();
+    autoWire = new AutoWire(new AutoWireSettings());
+    page = new WebPage() {
+
+      private static final long serialVersionUID = 1L;
+    };
+    session = tester.getSession();
+    // fill the caches and make sure something is measured at all
+    if (((MarkupContainer) initializationHit()).size() != 2) {
+      throw new IllegalStateException("BasicPanel was not auto-wired");
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    tester.destroy();
+  }
+
+  @Benchmark
+  public Component construct() {
+    final Component panel = new BasicPanel("panel");
+    page.addOrReplace(panel);
+    return panel;
+  }
+
+  @Benchmark
+  public Component instantiationHit() {
+    final Component panel = new BasicPanel("panel");
+    page.addOrReplace(panel);
+    autoWire.onInstantiation(panel);
+    return panel;
+  }
+
+  @Benchmark
+  public Component instantiationMiss() {
+    autoWire.clearCache();
+    final Component panel = new BasicPanel("panel");
+    page.addOrReplace(panel);
+    autoWire.onInstantiation(panel);
+    return panel;
+  }
+
+  @Benchmark
+  public Component initializationHit() {
+    final Component panel = new BasicPanel("panel");
+    page.addOrReplace(panel);
+    autoWire.onInstantiation(panel);
+    autoWire.onInitialize(panel);
+    return panel;
+  }
+
+  // two markups of a class alternate, both wired with recently used plans
+  @Benchmark
+  public Component initializationHitAlternating() {
+    compact = !compact;
+    session.setStyle(compact ? "compact" : null);
+    final Component panel = new StylePanel("panel");
+    page.addOrReplace(panel);
+    autoWire.onInstantiation(panel);
+    autoWire.onInitialize(panel);
+    return panel;
+  }
+
+  @Benchmark
+  public Component initializationMiss() {
+    autoWire.clearPlans();
+    final Component panel = new BasicPanel("panel");
+    page.addOrReplace(panel);
+    autoWire.onInstantiation(panel);
+    autoWire.onInitialize(panel);
+    return panel;
+  }
+
+}
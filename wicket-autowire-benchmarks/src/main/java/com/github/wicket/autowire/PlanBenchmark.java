@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package com.github.wicket.autowire;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.wicket.Component;
+import org.apache.wicket.markup.html.WebPage;
+import org.apache.wicket.util.tester.WicketTester;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Building a wiring plan from markup, as done on every markup miss.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlanBenchmark {
+
+  /**
+   * small: 2 components, medium: 10 components, large: 40 components in
+   * nested containers and plain html.
+   */
+  @Param({ "small", "medium", "large" })
+  public String markup;
+
+  private WicketTester tester;
+  private AutoWire autoWire;
+  private Component panel;
+
+  @Setup
+  public void setUp() {
+    tester = new WicketTester();
+    autoWire = new AutoWire(new AutoWireSettings());
+    if ("small".equals(markup)) {
+      panel = new BasicPanel("panel");
+    }
+    else if ("medium".equals(markup)) {
+      panel = new MediumPanel("panel");
+    }
+    else {
+      panel = new LargePanel("panel");
+    }
+    // the markup type is resolved through the page
+    new WebPage() {
+
+      private static final long serialVersionUID = 1L;
+    }.add(panel);
+    autoWire.onInstantiation(panel);
+  }
+
+  @TearDown
+  public void tearDown() {
+    tester.destroy();
+  }
+
+  @Benchmark
+  public Object buildPlan() {
+    return autoWire.buildPlan(panel);
+  }
+
+}
@@ -0,0 +1,54 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package com.github.wicket.autowire;
+
+/**
+ * Reports the heap retained per cached markup variant of equal structure,
+ * measured by clearing the plan caches after rendering the variants. The
+ * figure depends on the garbage collector, so it is reported rather than
+ * benchmarked.
+ */
+public final class PlanFootprint {
+
+  private static final int VARIANTS = 1000;
+
+  private PlanFootprint() {
+  }
+
+  public static void main(String[] args) {
+    final AutoWireTester tester = new AutoWireTester(new AutoWireSettings().setPlanCacheSize(2 * VARIANTS));
+    try {
+      for (int i = 0; i < VARIANTS; i++) {
+        tester.startComponentInPage(new VariantPanel("testObject", i));
+      }
+      final AutoWire autoWire = AutoWire.get(tester.getApplication());
+      final long cached = getUsedHeap();
+      autoWire.clearPlans();
+      final long bytes = (cached - getUsedHeap()) / VARIANTS;
+      System.out.println("Plan cache footprint: " + bytes + " bytes per cached markup variant");
+    }
+    finally {
+      tester.destroy();
+    }
+  }
+
+  private static long getUsedHeap() {
+    final Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+}
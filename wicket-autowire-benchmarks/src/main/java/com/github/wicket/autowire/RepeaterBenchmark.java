@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package com.github.wicket.autowire;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.wicket.Component;
+import org.apache.wicket.markup.html.WebMarkupContainer;
+import org.apache.wicket.util.tester.WicketTester;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Populates a repeater of an initialized page, as a repeater does before
+ * rendering, with auto-wired panels and with panels adding their children by
+ * hand. Rendering is left out, it is the same for both.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RepeaterBenchmark {
+
+  @Param({ "100", "1000" })
+  public int items;
+
+  private WicketTester tester;
+  private RepeaterPage page;
+
+  @Setup
+  public void setUp() {
+    tester = new AutoWireTester();
+    page = tester.startPage(RepeaterPage.class);
+    // make sure something is measured at all
+    if (((BasicPanel) populate(true).get(0).get("panel")).size() != 2) {
+      throw new IllegalStateException("BasicPanel was not auto-wired");
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    tester.destroy();
+  }
+
+  @Benchmark
+  public Component autoWired() {
+    return populate(true);
+  }
+
+  @Benchmark
+  public Component manual() {
+    return populate(false);
+  }
+
+  private WebMarkupContainer populate(boolean autoWired) {
+    page.items.removeAll();
+    for (int i = 0; i < items; i++) {
+      final WebMarkupContainer item = new WebMarkupContainer(page.items.newChildId());
+      page.items.add(item);
+      item.add(autoWired ? new BasicPanel("panel") : new BasicPanelNoAuto("panel"));
+    }
+    return page.items;
+  }
+
+}
@@ -0,0 +1,393 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package com.github.wicket.autowire.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.FilerException;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * Generates an {@code AutoWirer} for every component class that has
+ * {@code AutoComponent} annotated fields in its hierarchy. The generated code
+ * reads, creates and assigns the fields directly, so {@code AutoWire} does not
+ * need reflection for these classes.
+ * <p>
+ * Classes whose fields or constructors are not accessible from generated code
+ * in the same package (private members, package private members of super
+ * classes in other packages, ...) are skipped and keep using reflection.
+ */
+@SupportedAnnotationTypes("*")
+public class AutoWireProcessor extends AbstractProcessor {
+
+  private static final String AUTO_COMPONENT = "com.github.wicket.autowire.AutoComponent";
+  private static final String AUTO_WIRER = "com.github.wicket.autowire.AutoWirer";
+  private static final String COMPONENT = "org.apache.wicket.Component";
+  private static final String SUFFIX = "$$AutoWirer";
+
+  private final Set<String> generated = new HashSet<String>();
+
+  @Override
+  public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latestSupported();
+  }
+
+  @Override
+  public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+    TypeElement component = processingEnv.getElementUtils().getTypeElement(COMPONENT);
+    if (component == null || processingEnv.getElementUtils().getTypeElement(AUTO_COMPONENT) == null) {
+      return false;
+    }
+    for (Element element : roundEnv.getRootElements()) {
+      scan(element, component);
+    }
+    return false;
+  }
+
+  private void scan(Element element, TypeElement component) {
+    if (element instanceof TypeElement) {
+      TypeElement type = (TypeElement) element;
+      if (type.getKind() == ElementKind.CLASS && isSubtype(type.asType(), component.asType())) {
+        process(type, component);
+      }
+      for (Element enclosed : type.getEnclosedElements()) {
+        scan(enclosed, component);
+      }
+    }
+  }
+
+  private void process(TypeElement type, TypeElement component) {
+    String binaryName = processingEnv.getElementUtils().getBinaryName(type).toString();
+    if (generated.contains(binaryName)) {
+      return;
+    }
+
+    // annotated fields of the class hierarchy, sub class fields first
+    List<VariableElement> fields = new ArrayList<VariableElement>();
+    for (TypeElement clazz = type; clazz != null; clazz = getSuperclass(clazz, component)) {
+      for (VariableElement field : ElementFilter.fieldsIn(clazz.getEnclosedElements())) {
+        if (getAutoComponent(field) != null) {
+          fields.add(field);
+        }
+      }
+    }
+    if (fields.isEmpty()) {
+      return;
+    }
+
+    PackageElement pkg = processingEnv.getElementUtils().getPackageOf(type);
+    String name = binaryName.substring(binaryName.lastIndexOf('.') + 1) + SUFFIX;
+    String qualifiedName = pkg.isUnnamed() ? name : pkg.getQualifiedName() + "." + name;
+    // always generated again, a wirer of a previous (incremental) build may
+    // be stale
+    String source = null;
+    try {
+      source = generate(type, pkg, name, fields, component);
+      JavaFileObject file = processingEnv.getFiler().createSourceFile(qualifiedName, type);
+      Writer writer = file.openWriter();
+      try {
+        writer.write(source);
+      }
+      finally {
+        writer.close();
+      }
+      generated.add(binaryName);
+    }
+    catch (UnsupportedException e) {
+      processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+                                               "wicket-autowire: " + type + " uses reflection. " + e.getMessage(),
+                                               type);
+    }
+    catch (FilerException e) {
+      // the wirer of a previous build is compiled from source again, which is
+      // fine as long as it did not change
+      if (!source.equals(read(pkg, name))) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                                                 "wicket-autowire: The wirer of a previous build for " + type
+                                                     + " is stale and can not be generated again. Rebuild clean.",
+                                                 type);
+      }
+    }
+    catch (IOException e) {
+      processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                                               "Unable to write wirer for " + type + ": " + e,
+                                               type);
+    }
+  }
+
+  private String generate(TypeElement type,
+                          PackageElement pkg,
+                          String className,
+                          List<VariableElement> fields,
+                          TypeElement component) throws UnsupportedException {
+    if (type.getNestingKind() == NestingKind.LOCAL || type.getNestingKind() == NestingKind.ANONYMOUS
+        || !isAccessible(type, pkg)) {
+      throw new UnsupportedException("Class is not accessible.");
+    }
+
+    String typeName = rawName(type);
+
+    StringBuilder names = new StringBuilder();
+    StringBuilder getters = new StringBuilder();
+    StringBuilder instantiate = new StringBuilder();
+    Set<String> done = new HashSet<String>();
+
+    for (int i = 0; i < fields.size(); i++) {
+      VariableElement field = fields.get(i);
+      if (!isAccessible(field, pkg)) {
+        throw new UnsupportedException("Field " + field + " is not accessible.");
+      }
+      names.append(i > 0 ? ", " : "").append('"').append(field.getSimpleName()).append('"');
+      getters.append("      case ").append(i).append(":\n");
+      getters.append("        return ").append(access(field)).append(";\n");
+
+      AnnotationMirror ann = getAutoComponent(field);
+      if (!Boolean.TRUE.equals(getValue(ann, "inject"))) {
+        continue;
+      }
+      String factory = (String) getValue(ann, "factory");
+      if (factory != null && !factory.isEmpty()) {
+        throw new UnsupportedException("Field " + field + " is created by a factory.");
+      }
+      String id = (String) getValue(ann, "id");
+      if (id == null || id.isEmpty()) {
+        id = field.getSimpleName().toString();
+      }
+      // fields in super classes are ignored, if they are in subclasses too
+      if (!done.add(id)) {
+        continue;
+      }
+
+      String creation = creation(field, type, pkg, literal(id));
+      instantiate.append("    if (").append(access(field)).append(" == null) {\n");
+      instantiate.append("      final ").append(rawName(asElement(field.asType()))).append(" value").append(i);
+      instantiate.append(" = ").append(creation).append(";\n");
+      for (VariableElement target : getTargets(field, component)) {
+        if (!isAccessible(target, pkg) || target.getModifiers().contains(Modifier.FINAL)
+            || !processingEnv.getTypeUtils().isAssignable(erasure(field.asType()), erasure(target.asType()))) {
+          throw new UnsupportedException("Field " + target + " can not be assigned.");
+        }
+        instantiate.append("      ").append(access(target)).append(" = value").append(i).append(";\n");
+      }
+      instantiate.append("    }\n");
+    }
+
+    StringBuilder source = new StringBuilder();
+    if (!pkg.isUnnamed()) {
+      source.append("package ").append(pkg.getQualifiedName()).append(";\n\n");
+    }
+    source.append("/**\n * Generated by ").append(getClass().getName()).append(". Do not edit.\n */\n");
+    source.append("@SuppressWarnings({\"rawtypes\", \"unchecked\"})\n");
+    source.append("public final class ").append(className);
+    source.append(" implements ").append(AUTO_WIRER).append('<').append(typeName).append("> {\n\n");
+    source.append("  private static final String[] FIELDS = {").append(names).append("};\n\n");
+    source.append("  @Override\n");
+    source.append("  public String[] getFieldNames() {\n");
+    source.append("    return FIELDS.clone();\n");
+    source.append("  }\n\n");
+    source.append("  @Override\n");
+    source.append("  public ").append(COMPONENT).append(" getField(final ").append(typeName);
+    source.append(" component, final int index) {\n");
+    source.append("    switch (index) {\n");
+    source.append(getters);
+    source.append("      default:\n");
+    source.append("        throw new IndexOutOfBoundsException(String.valueOf(index));\n");
+    source.append("    }\n");
+    source.append("  }\n\n");
+    source.append("  @Override\n");
+    source.append("  public void instantiate(final ").append(typeName).append(" component) {\n");
+    source.append(instantiate);
+    source.append("  }\n\n");
+    source.append("}\n");
+    return source.toString();
+  }
+
+  // source of a generated file, or null if it can not be read
+  private String read(PackageElement pkg, String name) {
+    try {
+      return processingEnv.getFiler()
+                          .getResource(StandardLocation.SOURCE_OUTPUT, pkg.getQualifiedName(), name + ".java")
+                          .getCharContent(true)
+                          .toString();
+    }
+    catch (IOException e) {
+      return null;
+    }
+  }
+
+  // constructor call equivalent to the reflective lookup of AutoWire
+  private String creation(VariableElement field, TypeElement owner, PackageElement pkg, String id) throws UnsupportedException {
+    TypeElement fieldType = asElement(field.asType());
+    if (fieldType == null || fieldType.getKind() != ElementKind.CLASS
+        || fieldType.getModifiers().contains(Modifier.ABSTRACT) || !isAccessible(fieldType, pkg)) {
+      throw new UnsupportedException("Type of field " + field + " can not be instantiated.");
+    }
+    ExecutableElement constructor = null;
+    for (ExecutableElement candidate : ElementFilter.constructorsIn(fieldType.getEnclosedElements())) {
+      if (candidate.getParameters().size() == 1
+          && erasure(candidate.getParameters().get(0).asType()).toString().equals(String.class.getName())) {
+        constructor = candidate;
+      }
+    }
+    if (constructor == null || !isAccessible(constructor, pkg)) {
+      throw new UnsupportedException("No accessible constructor with id parameter in " + fieldType + ".");
+    }
+
+    if (fieldType.getNestingKind() == NestingKind.TOP_LEVEL
+        || fieldType.getModifiers().contains(Modifier.STATIC)) {
+      return "new " + rawName(fieldType) + "(" + id + ")";
+    }
+    else if (fieldType.getNestingKind() == NestingKind.MEMBER) {
+      TypeElement enclosing = (TypeElement) fieldType.getEnclosingElement();
+      if (!isSubtype(owner.asType(), enclosing.asType())) {
+        throw new UnsupportedException("Enclosing class of " + fieldType + " is not in the hierarchy.");
+      }
+      return "((" + rawName(enclosing) + ") component).new " + fieldType.getSimpleName() + "(" + id + ")";
+    }
+    throw new UnsupportedException("Type of field " + field + " is a local class.");
+  }
+
+  // the annotated field and the fields it shadows in super classes
+  private List<VariableElement> getTargets(VariableElement field, TypeElement component) {
+    List<VariableElement> targets = new ArrayList<VariableElement>();
+    targets.add(field);
+    TypeElement clazz = getSuperclass((TypeElement) field.getEnclosingElement(), component);
+    for (; clazz != null; clazz = getSuperclass(clazz, component)) {
+      for (VariableElement f : ElementFilter.fieldsIn(clazz.getEnclosedElements())) {
+        if (f.getSimpleName().contentEquals(field.getSimpleName())) {
+          targets.add(f);
+        }
+      }
+    }
+    return targets;
+  }
+
+  private String access(VariableElement field) {
+    TypeElement declaring = (TypeElement) field.getEnclosingElement();
+    if (field.getModifiers().contains(Modifier.STATIC)) {
+      return rawName(declaring) + "." + field.getSimpleName();
+    }
+    return "((" + rawName(declaring) + ") component)." + field.getSimpleName();
+  }
+
+  private TypeElement getSuperclass(TypeElement type, TypeElement component) {
+    TypeMirror superclass = type.getSuperclass();
+    if (superclass.getKind() != TypeKind.DECLARED || !isSubtype(superclass, component.asType())) {
+      return null;
+    }
+    return (TypeElement) ((DeclaredType) superclass).asElement();
+  }
+
+  private TypeElement asElement(TypeMirror type) {
+    if (type.getKind() != TypeKind.DECLARED) {
+      return null;
+    }
+    return (TypeElement) ((DeclaredType) type).asElement();
+  }
+
+  private boolean isSubtype(TypeMirror type, TypeMirror supertype) {
+    return processingEnv.getTypeUtils().isSubtype(erasure(type), erasure(supertype));
+  }
+
+  private TypeMirror erasure(TypeMirror type) {
+    return processingEnv.getTypeUtils().erasure(type);
+  }
+
+  private String rawName(TypeElement type) {
+    return erasure(type.asType()).toString();
+  }
+
+  // generated code is placed in the package of the wired class
+  private boolean isAccessible(Element element, PackageElement pkg) {
+    for (Element e = element; e != null && e.getKind() != ElementKind.PACKAGE; e = e.getEnclosingElement()) {
+      Set<Modifier> modifiers = e.getModifiers();
+      if (modifiers.contains(Modifier.PRIVATE)) {
+        return false;
+      }
+      if (!modifiers.contains(Modifier.PUBLIC)
+          && !processingEnv.getElementUtils().getPackageOf(e).equals(pkg)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private AnnotationMirror getAutoComponent(Element element) {
+    for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+      TypeElement annotation = (TypeElement) mirror.getAnnotationType().asElement();
+      if (annotation.getQualifiedName().contentEquals(AUTO_COMPONENT)) {
+        return mirror;
+      }
+    }
+    return null;
+  }
+
+  private Object getValue(AnnotationMirror mirror, String name) {
+    for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : processingEnv.getElementUtils()
+                                                                                                 .getElementValuesWithDefaults(mirror)
+                                                                                                 .entrySet()) {
+      if (entry.getKey().getSimpleName().contentEquals(name)) {
+        return entry.getValue().getValue();
+      }
+    }
+    return null;
+  }
+
+  private static String literal(String value) {
+    StringBuilder literal = new StringBuilder("\"");
+    for (char c : value.toCharArray()) {
+      if (c == '"' || c == '\\') {
+        literal.append('\\');
+      }
+      literal.append(c);
+    }
+    return literal.append('"').toString();
+  }
+
+  private static class UnsupportedException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    UnsupportedException(String message) {
+      super(message);
+    }
+  }
+
+}
@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package com.github.wicket.autowire.processor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.log4j.AppenderSkeleton;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.spi.LoggingEvent;
+import org.apache.wicket.markup.html.basic.Label;
+import org.apache.wicket.util.tester.WicketTester;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.wicket.autowire.AutoWire;
+import com.github.wicket.autowire.AutoWirer;
+
+public class AutoWireProcessorTest {
+
+  private WicketTester tester;
+
+  @Before
+  public void setUp() {
+    this.tester = new WicketTester();
+    AutoWire.install(this.tester.getApplication());
+  }
+
+  /**
+   * Assert that a wirer is generated, and that AutoWire loads and uses it for
+   * accessible fields.
+   */
+  @Test
+  public void testGeneratedPanel() throws Exception {
+    Class<?> wirer = Class.forName(GeneratedPanel.class.getName() + AutoWirer.SUFFIX);
+    assertTrue(AutoWirer.class.isAssignableFrom(wirer));
+
+    final List<String> messages = new ArrayList<String>();
+    AppenderSkeleton appender = new AppenderSkeleton() {
+
+      @Override
+      protected void append(LoggingEvent event) {
+        messages.add(event.getRenderedMessage());
+      }
+
+      @Override
+      public boolean requiresLayout() {
+        return false;
+      }
+
+      @Override
+      public void close() {
+      }
+    };
+    Logger logger = Logger.getLogger(AutoWire.class);
+    Level level = logger.getLevel();
+    logger.setLevel(Level.TRACE);
+    logger.addAppender(appender);
+    try {
+      this.tester.startComponentInPage(GeneratedPanel.class);
+    }
+    finally {
+      logger.removeAppender(appender);
+      logger.setLevel(level);
+    }
+    this.tester.assertComponent("testObject:link", GeneratedPanel.TestLink.class);
+    this.tester.assertComponent("testObject:link:custom-id", Label.class);
+    assertTrue(messages.toString(), messages.contains("Using generated wirer " + wirer.getName()));
+  }
+
+  /**
+   * Assert that classes with private fields keep using reflection.
+   */
+  @Test
+  public void testReflectivePanel() {
+    boolean generated = true;
+    try {
+      Class.forName(ReflectivePanel.class.getName() + AutoWirer.SUFFIX);
+    }
+    catch (ClassNotFoundException e) {
+      generated = false;
+    }
+    assertEquals(false, generated);
+
+    this.tester.startComponentInPage(ReflectivePanel.class);
+    this.tester.assertComponent("testObject:label", Label.class);
+  }
+
+}
@@ -0,0 +1,51 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package com.github.wicket.autowire.processor;
+
+import org.apache.wicket.markup.html.basic.Label;
+import org.apache.wicket.markup.html.link.Link;
+import org.apache.wicket.markup.html.panel.Panel;
+
+import com.github.wicket.autowire.AutoComponent;
+
+public class GeneratedPanel extends Panel {
+
+  private static final long serialVersionUID = 1L;
+
+  public GeneratedPanel(final String id) {
+    super(id);
+  }
+
+  @AutoComponent
+  TestLink link;
+
+  @AutoComponent(id = "custom-id")
+  Label label;
+
+  class TestLink extends Link<Object> {
+
+    private static final long serialVersionUID = 1L;
+
+    public TestLink(final String id) {
+      super(id);
+    }
+
+    @Override
+    public void onClick() {
+
+    }
+
+  }
+
+}